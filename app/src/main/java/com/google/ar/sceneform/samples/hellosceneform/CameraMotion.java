@@ -0,0 +1,33 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import com.google.ar.core.Pose;
+
+// Image motion caused by the camera rotation between two frames, the control input of
+// CornerTracker. Rotation moves every image point by about focal length * angle, whatever
+// its depth, while translation would need the depth of the sheet and is left to the
+// tracker's process noise. Roll is left out too, near the image center it hardly moves a corner.
+public class CameraMotion {
+
+    // Shift in pixels of the upright gray image (UtilsBitmap.imageToGray()) from the
+    // frame taken at pose from to the one at pose to, written to shift[0], shift[1].
+    // Poses are Camera.getPose(), focal lengths CameraIntrinsics.getFocalLength() of the CPU image.
+    public static void imageShift(Pose from, Pose to, float fx, float fy, double[] shift) {
+        // Rotation from the old to the new camera, in the axes of the old camera
+        Pose delta = from.inverse().compose(to);
+        float[] q = new float[4];
+        delta.getRotationQuaternion(q, 0);
+        double sign = q[3] < 0 ? -1 : 1;
+        // Small angle approximation of the rotation vector
+        double pitch = 2 * sign * q[0];
+        double yaw = 2 * sign * q[1];
+
+        // In the landscape camera image: turning left (+yaw) moves the scene right,
+        // tilting up (+pitch) moves it down
+        double du = fx * yaw;
+        double dv = fy * pitch;
+
+        // Rotated 90 degrees clockwise like the gray image: x' = height - 1 - v, y' = u
+        shift[0] = -dv;
+        shift[1] = du;
+    }
+}
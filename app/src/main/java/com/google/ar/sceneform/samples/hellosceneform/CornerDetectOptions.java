@@ -0,0 +1,102 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+// Tuning of the CornorDetect pipeline. Set it up before handing it to the detection,
+// the pipeline only reads it. Instances are not shared: the setters change them in place,
+// so every caller sets up its own, starting from defaults().
+public class CornerDetectOptions {
+
+    // A new instance with the default tuning
+    public static CornerDetectOptions defaults() {
+        return new CornerDetectOptions();
+    }
+
+    // Number of pyrDown steps before the detection, 0 runs it on the full image.
+    // Every level halves both sides, so the filter/Canny/Harris cost drops by about 4x per level.
+    // The corners found on the small image are refined with cornerSubPix on the full image.
+    int pyramidLevels = 0;
+
+    // Noise filter in front of Canny
+    Prefilter prefilter = Prefilter.DEFAULT;
+
+    // Horizontal strips TiledCornerDetector splits the detection level into, one per core.
+    // CornorDetect.getCorner() itself always runs on one thread.
+    int strips = 1;
+
+    // How the live detection follows the corners after a full-frame lock
+    CornerTracking.Mode tracking = CornerTracking.Mode.NONE;
+
+    // Latency of every stage, nothing is recorded with PipelineMetrics.NONE
+    PipelineMetrics metrics = PipelineMetrics.NONE;
+
+    public CornerDetectOptions setPyramidLevels(int levels) {
+        if (levels < 0 || levels > 4)
+            throw new IllegalArgumentException("Pyramid levels must be in [0, 4]: " + levels);
+        pyramidLevels = levels;
+        return this;
+    }
+
+    public int getPyramidLevels() {
+        return pyramidLevels;
+    }
+
+    public CornerDetectOptions setPrefilter(Prefilter prefilter) {
+        if (prefilter == null)
+            throw new IllegalArgumentException("Prefilter must not be null, use Prefilter.none()");
+        this.prefilter = prefilter;
+        return this;
+    }
+
+    public Prefilter getPrefilter() {
+        return prefilter;
+    }
+
+    public CornerDetectOptions setStrips(int strips) {
+        if (strips < 1 || strips > 16)
+            throw new IllegalArgumentException("Strips must be in [1, 16]: " + strips);
+        this.strips = strips;
+        return this;
+    }
+
+    public int getStrips() {
+        return strips;
+    }
+
+    public CornerDetectOptions setTracking(CornerTracking.Mode tracking) {
+        if (tracking == null)
+            throw new IllegalArgumentException("Tracking must not be null, use Mode.NONE");
+        this.tracking = tracking;
+        return this;
+    }
+
+    public CornerTracking.Mode getTracking() {
+        return tracking;
+    }
+
+    public CornerDetectOptions setMetrics(PipelineMetrics metrics) {
+        if (metrics == null)
+            throw new IllegalArgumentException("Metrics must not be null, use PipelineMetrics.NONE");
+        this.metrics = metrics;
+        return this;
+    }
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    // The tracker of the selected mode, null for Mode.NONE
+    CornerTracking createTracker() {
+        switch (tracking) {
+            case KALMAN_WINDOWS:
+                return new CornerTracker(this);
+            case OPTICAL_FLOW:
+                return new OpticalFlowTracker();
+            default:
+                return null;
+        }
+    }
+
+    // Downscale factor between the full image and the detection level
+    public int getScale() {
+        return 1 << pyramidLevels;
+    }
+}
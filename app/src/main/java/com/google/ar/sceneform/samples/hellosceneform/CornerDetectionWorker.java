@@ -0,0 +1,184 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import android.media.Image;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import com.google.ar.core.Pose;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Runs CornorDetect on a single background thread for the live detection mode.
+// Only the newest submitted frame is kept: a frame that has not been picked up
+// by the worker yet is replaced (dropped) by the next one, so the worker never
+// falls behind the camera. Frames that FrameQualityGate rejects are skipped without a
+// result. Results are delivered on the main thread. Every stage is timed into the
+// PipelineMetrics of the options.
+public class CornerDetectionWorker {
+
+    public interface Listener {
+        // corners is null when the detection failed on that frame
+        void onCornersDetected(ArrayList<Point> corners, long frameTimestamp);
+    }
+
+    private static class Slot {
+        final Mat gray = new Mat();
+        long timestamp;
+        // Camera pose and focal lengths of the frame, for the tracker's motion input
+        Pose pose;
+        float fx;
+        float fy;
+    }
+
+    private final Listener mListener;
+    private final CornerDetectOptions mOptions;
+    // Runs the detection on all strips of the options, null for a single strip
+    private final TiledCornerDetector mTiled;
+    // Follows the corners after a full-frame lock, null without tracking.
+    // Only used on the worker thread, like mLastPose.
+    private final CornerTracking mTracker;
+    private Pose mLastPose;
+    private final double[] mShift = new double[2];
+    private final FrameQualityGate mGate = new FrameQualityGate();
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Frame waiting for the worker, and one spare slot to avoid allocating a Mat per frame
+    private final AtomicReference<Slot> mPending = new AtomicReference<>();
+    private final AtomicReference<Slot> mSpare = new AtomicReference<>();
+    private volatile boolean mStopped;
+
+    private int mDroppedFrames;
+
+    public CornerDetectionWorker(CornerDetectOptions options, Listener listener) {
+        mOptions = options;
+        mListener = listener;
+        mTiled = options.getStrips() > 1 ? new TiledCornerDetector(options.getStrips()) : null;
+        mTracker = options.createTracker();
+        mThread = new HandlerThread("CornerDetection", Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    // Called on the UI thread. Copies the Y plane out of the image, the caller still has to close it.
+    // pose is Camera.getPose() of the frame and focalLength CameraIntrinsics.getFocalLength()
+    // of the CPU image, both only needed for tracking.
+    public void submit(Image image, long timestamp, Pose pose, float[] focalLength) {
+        if (mStopped) {
+            return;
+        }
+        Slot slot = mSpare.getAndSet(null);
+        if (slot == null) {
+            slot = new Slot();
+        }
+        long t = mOptions.metrics.now();
+        UtilsBitmap.imageToGray(image, slot.gray);
+        mOptions.metrics.record(PipelineMetrics.Stage.ROTATE, t);
+        slot.timestamp = timestamp;
+        slot.pose = pose;
+        slot.fx = focalLength[0];
+        slot.fy = focalLength[1];
+
+        Slot dropped = mPending.getAndSet(slot);
+        if (dropped != null) {
+            // The worker has not started on it yet; its queued run will pick up the new frame
+            mDroppedFrames++;
+            recycle(dropped);
+        } else {
+            mHandler.post(mDetect);
+        }
+    }
+
+    public int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    // Its counters can be read on any thread, acceptTracking() is for the caller of submit()
+    public FrameQualityGate getQualityGate() {
+        return mGate;
+    }
+
+    public void stop() {
+        mStopped = true;
+        mHandler.removeCallbacksAndMessages(null);
+        // Runs after a detection that may still be in progress, on the thread owning the workspace
+        mHandler.post(() -> {
+            CornorDetect.releaseWorkspace();
+            mGate.release();
+            if (mTiled != null) {
+                mTiled.release();
+            }
+            if (mTracker != null) {
+                mTracker.release();
+            }
+        });
+        mThread.quitSafely();
+        mMainHandler.removeCallbacksAndMessages(null);
+        recycle(mPending.getAndSet(null));
+        recycle(mSpare.getAndSet(null));
+    }
+
+    private final Runnable mDetect = new Runnable() {
+        @Override
+        public void run() {
+            Slot slot = mPending.getAndSet(null);
+            if (slot == null) {
+                return;
+            }
+            long t = mOptions.metrics.now();
+            FrameQualityGate.Verdict verdict = mGate.check(slot.gray);
+            mOptions.metrics.record(PipelineMetrics.Stage.QUALITY_GATE, t);
+            if (verdict != FrameQualityGate.Verdict.OK) {
+                recycle(slot);
+                return;
+            }
+            final ArrayList<Point> corners = detect(slot);
+            final long timestamp = slot.timestamp;
+            recycle(slot);
+
+            mMainHandler.post(() -> {
+                if (!mStopped) {
+                    mListener.onCornersDetected(corners, timestamp);
+                }
+            });
+        }
+    };
+
+    // Tracks the corners while the tracker is locked, falls back to the full frame otherwise
+    private ArrayList<Point> detect(Slot slot) {
+        ArrayList<Point> corners = null;
+        if (mTracker != null && mTracker.isLocked()) {
+            // Motion since the last processed frame, dropped frames included
+            long t = mOptions.metrics.now();
+            CameraMotion.imageShift(mLastPose, slot.pose, slot.fx, slot.fy, mShift);
+            corners = mTracker.track(slot.gray, mShift[0], mShift[1]);
+            mOptions.metrics.record(PipelineMetrics.Stage.TRACK, t);
+        }
+        if (corners == null) {
+            corners = mTiled != null
+                    ? mTiled.getCorner(slot.gray, mOptions)
+                    : CornorDetect.getCorner(slot.gray, mOptions);
+            if (mTracker != null && corners != null) {
+                mTracker.lock(slot.gray, corners);
+            }
+        }
+        mLastPose = slot.pose;
+        return corners;
+    }
+
+    private void recycle(Slot slot) {
+        if (slot == null) {
+            return;
+        }
+        if (mStopped || !mSpare.compareAndSet(null, slot)) {
+            slot.gray.release();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import java.util.Arrays;
+
+// Uniform grid over the packed x/y corner candidates (x0, y0, x1, y1, ...) for the
+// clustering in CornorDetect.getPoint. Answers farthest point queries by visiting cells
+// from the farthest possible one and stopping as soon as no cell can beat the best hit,
+// and radius removal by only visiting the cells overlapping the radius.
+// All arrays are kept between frames, the grid lives in the CornerWorkspace.
+class CornerGrid {
+
+    static final int CELL_SIZE = 16;
+
+    private int[] mXy;
+    private int mCount;
+    private int mGridCols;
+    private int mGridRows;
+
+    // Candidate indices sorted by cell, cell c owns mItems[mCellStart[c] .. mCellStart[c + 1])
+    private int[] mCellStart = new int[1];
+    private int[] mCellFill = new int[0];
+    private int[] mItems = new int[0];
+    // Candidates not removed yet, per cell
+    private int[] mLive = new int[0];
+    private boolean[] mRemoved = new boolean[0];
+
+    // Cells sorted by their largest possible squared distance to (mOrderX, mOrderY)
+    private long[] mOrder = new long[0];
+    private int mOrderX = -1;
+    private int mOrderY = -1;
+
+    void build(int[] xy, int count, int width, int height) {
+        mXy = xy;
+        mCount = count;
+        mGridCols = (width + CELL_SIZE - 1) / CELL_SIZE;
+        mGridRows = (height + CELL_SIZE - 1) / CELL_SIZE;
+        int cells = mGridCols * mGridRows;
+
+        if (mCellStart.length < cells + 1) {
+            mCellStart = new int[cells + 1];
+            mCellFill = new int[cells];
+            mLive = new int[cells];
+            mOrder = new long[cells];
+        }
+        if (mItems.length < count) {
+            mItems = new int[count];
+            mRemoved = new boolean[count];
+        }
+
+        Arrays.fill(mLive, 0, cells, 0);
+        for (int i = 0; i < count; i++) {
+            mLive[cellOf(i)]++;
+        }
+        mCellStart[0] = 0;
+        for (int c = 0; c < cells; c++) {
+            mCellStart[c + 1] = mCellStart[c] + mLive[c];
+            mCellFill[c] = mCellStart[c];
+        }
+        // Ascending index inside every cell, i.e. the original row-major order
+        for (int i = 0; i < count; i++) {
+            mItems[mCellFill[cellOf(i)]++] = i;
+        }
+        Arrays.fill(mRemoved, 0, count, false);
+        mOrderX = -1;
+        mOrderY = -1;
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    int x(int i) {
+        return mXy[2 * i];
+    }
+
+    int y(int i) {
+        return mXy[2 * i + 1];
+    }
+
+    long distanceSquared(int i, int px, int py) {
+        long dx = mXy[2 * i] - px;
+        long dy = mXy[2 * i + 1] - py;
+        return dx * dx + dy * dy;
+    }
+
+    // Index of the remaining candidate farthest from (px, py), -1 if none is farther than 0.
+    // Ties go to the lowest index, like a linear scan in row-major order.
+    int farthest(int px, int py) {
+        sortCellsByDistance(px, py);
+
+        long best = 0;
+        int bestIndex = -1;
+        for (int k = mGridCols * mGridRows - 1; k >= 0; k--) {
+            long bound = mOrder[k] >>> 32;
+            if (bound < best) {
+                break;
+            }
+            int c = (int) (mOrder[k] & 0xffffffffL);
+            if (mLive[c] == 0) {
+                continue;
+            }
+            for (int j = mCellStart[c]; j < mCellStart[c + 1]; j++) {
+                int i = mItems[j];
+                if (mRemoved[i]) {
+                    continue;
+                }
+                long d = distanceSquared(i, px, py);
+                if (d > best || (d == best && bestIndex >= 0 && i < bestIndex)) {
+                    best = d;
+                    bestIndex = i;
+                }
+            }
+        }
+        return bestIndex;
+    }
+
+    // Removes all candidates closer than sqrt(radiusSquared) to (px, py)
+    void removeWithin(int px, int py, double radiusSquared) {
+        double radius = Math.sqrt(radiusSquared);
+        int cx0 = Math.max(0, (int) Math.floor((px - radius) / CELL_SIZE));
+        int cy0 = Math.max(0, (int) Math.floor((py - radius) / CELL_SIZE));
+        int cx1 = Math.min(mGridCols - 1, (int) Math.floor((px + radius) / CELL_SIZE));
+        int cy1 = Math.min(mGridRows - 1, (int) Math.floor((py + radius) / CELL_SIZE));
+
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                int c = cy * mGridCols + cx;
+                if (mLive[c] == 0) {
+                    continue;
+                }
+                for (int j = mCellStart[c]; j < mCellStart[c + 1]; j++) {
+                    int i = mItems[j];
+                    if (!mRemoved[i] && distanceSquared(i, px, py) < radiusSquared) {
+                        mRemoved[i] = true;
+                        mLive[c]--;
+                    }
+                }
+            }
+        }
+    }
+
+    private int cellOf(int i) {
+        return (mXy[2 * i + 1] / CELL_SIZE) * mGridCols + mXy[2 * i] / CELL_SIZE;
+    }
+
+    // Sort key: upper bound of the squared distance in the high bits, cell index in the low bits
+    private void sortCellsByDistance(int px, int py) {
+        if (px == mOrderX && py == mOrderY) {
+            return;
+        }
+        int cells = mGridCols * mGridRows;
+        for (int c = 0; c < cells; c++) {
+            int left = (c % mGridCols) * CELL_SIZE;
+            int top = (c / mGridCols) * CELL_SIZE;
+            long dx = Math.max(Math.abs(px - left), Math.abs(px - (left + CELL_SIZE - 1)));
+            long dy = Math.max(Math.abs(py - top), Math.abs(py - (top + CELL_SIZE - 1)));
+            mOrder[c] = ((dx * dx + dy * dy) << 32) | c;
+        }
+        Arrays.sort(mOrder, 0, cells);
+        mOrderX = px;
+        mOrderY = py;
+    }
+}
@@ -0,0 +1,91 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import com.google.ar.core.Coordinates2d;
+import com.google.ar.core.Frame;
+import com.google.ar.core.HitResult;
+import com.google.ar.core.Plane;
+
+import org.opencv.core.Point;
+
+import java.util.List;
+
+// Projects corners found in the upright gray camera image (UtilsBitmap.imageToGray()) into
+// the world. The mapping from the CPU image to the view is an affine transform that only
+// changes with the display geometry (rotation, view size) or the camera image size, so it
+// is taken from Frame.transformCoordinates2d() once and reused for every corner.
+// UI thread only, like the Frame it works on.
+public class CornerProjector {
+
+    // view = (m0 * u + m1 * v + m2, m3 * u + m4 * v + m5) for a pixel (u, v) of the landscape camera image
+    private final float[] mTransform = new float[6];
+    private boolean mValid;
+    // Size of the landscape camera image the transform was taken for
+    private int mImageWidth;
+    private int mImageHeight;
+
+    private final float[] mImagePoints = new float[6];
+    private final float[] mViewPoints = new float[6];
+
+    // Called for every frame, the transform has to be taken again after a display change
+    public void onFrame(Frame frame) {
+        if (frame.hasDisplayGeometryChanged()) {
+            mValid = false;
+        }
+    }
+
+    // Best hit per corner, null for corners that hit nothing. Corners are in pixels of the
+    // upright gray image of the frame's CPU image.
+    public HitResult[] hitTest(Frame frame, List<Point> corners) {
+        updateTransform(frame);
+
+        HitResult[] hits = new HitResult[corners.size()];
+        for (int i = 0; i < hits.length; i++) {
+            Point corner = corners.get(i);
+            // Undo the 90 degree clockwise rotation of the gray image: u = y', v = height - 1 - x'
+            float u = (float) corner.y;
+            float v = (float) (mImageHeight - 1 - corner.x);
+            float[] m = mTransform;
+            hits[i] = bestHit(frame.hitTest(m[0] * u + m[1] * v + m[2], m[3] * u + m[4] * v + m[5]));
+        }
+        return hits;
+    }
+
+    private void updateTransform(Frame frame) {
+        int[] size = frame.getCamera().getImageIntrinsics().getImageDimensions();
+        if (mValid && size[0] == mImageWidth && size[1] == mImageHeight) {
+            return;
+        }
+        mImageWidth = size[0];
+        mImageHeight = size[1];
+
+        // Origin and the two axis ends of the image, all three in one call
+        mImagePoints[0] = 0;
+        mImagePoints[1] = 0;
+        mImagePoints[2] = mImageWidth;
+        mImagePoints[3] = 0;
+        mImagePoints[4] = 0;
+        mImagePoints[5] = mImageHeight;
+        frame.transformCoordinates2d(Coordinates2d.IMAGE_PIXELS, mImagePoints, Coordinates2d.VIEW, mViewPoints);
+
+        float[] m = mTransform;
+        m[0] = (mViewPoints[2] - mViewPoints[0]) / mImageWidth;
+        m[1] = (mViewPoints[4] - mViewPoints[0]) / mImageHeight;
+        m[2] = mViewPoints[0];
+        m[3] = (mViewPoints[3] - mViewPoints[1]) / mImageWidth;
+        m[4] = (mViewPoints[5] - mViewPoints[1]) / mImageHeight;
+        m[5] = mViewPoints[1];
+        mValid = true;
+    }
+
+    // The nearest hit inside a detected plane's polygon, otherwise the nearest hit at all.
+    // hitTest() returns the hits sorted by distance.
+    private static HitResult bestHit(List<HitResult> hits) {
+        for (HitResult hit : hits) {
+            if (hit.getTrackable() instanceof Plane
+                    && ((Plane) hit.getTrackable()).isPoseInPolygon(hit.getHitPose())) {
+                return hit;
+            }
+        }
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+}
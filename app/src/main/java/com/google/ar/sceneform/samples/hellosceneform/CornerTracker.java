@@ -0,0 +1,207 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.video.KalmanFilter;
+
+import java.util.ArrayList;
+
+// Follows the four sheet corners from frame to frame once a full CornorDetect run found them.
+// Every corner has a constant velocity KalmanFilter whose control input is the image shift
+// of the camera rotation (CameraMotion). The detection then only runs in a small window
+// around each predicted corner instead of on the whole frame, 4 windows of 80x80 are
+// about 1/12 of a 480x640 frame. When too few corners are found the tracker unlocks and
+// the caller goes back to the full-frame search.
+// Android-free like CornorDetect; one thread at a time.
+public class CornerTracker implements CornerTracking {
+
+    // Side of the search window around a predicted corner
+    static final int WINDOW = 80;
+    // Frames in a row with a lost corner before the tracker gives up
+    private static final int MAX_MISSES = 3;
+    // Weakest Harris response still taken as the corner
+    private static final double MIN_RESPONSE = 0.00001;
+    // Error covariance a lock starts with, a few pixels of uncertainty
+    private static final float[] LOCK_ERROR_COV = {
+            10, 0, 0, 0,
+            0, 10, 0, 0,
+            0, 0, 10, 0,
+            0, 0, 0, 10};
+
+    private final CornerDetectOptions mOptions;
+    private final CornerWorkspace mWorkspace = new CornerWorkspace();
+    private final KalmanFilter[] mFilters = new KalmanFilter[4];
+    // State and error covariance every lock starts the filters from. The filters share
+    // their data after set_statePost()/set_errorCovPost(), so they are refilled with put()
+    // and handed over again on every lock, never reallocated.
+    private final Mat[] mLockStates = new Mat[4];
+    private final Mat[] mLockErrorCovs = new Mat[4];
+    // Control and measurement vectors, reused for every corner
+    private final Mat mControl = new Mat(2, 1, CvType.CV_32F);
+    private final Mat mMeasurement = new Mat(2, 1, CvType.CV_32F);
+    private final float[] mVector = new float[4];
+
+    private boolean mLocked;
+    private int mMisses;
+    private long mProcessedPixels;
+
+    public CornerTracker(CornerDetectOptions options) {
+        mOptions = options;
+        for (int i = 0; i < mFilters.length; i++) {
+            mFilters[i] = createFilter();
+            mLockStates[i] = new Mat(4, 1, CvType.CV_32F);
+            mLockErrorCovs[i] = new Mat(4, 4, CvType.CV_32F);
+        }
+    }
+
+    @Override
+    public boolean isLocked() {
+        return mLocked;
+    }
+
+    // Pixels the last track() call ran the detection on
+    public long getProcessedPixels() {
+        return mProcessedPixels;
+    }
+
+    @Override
+    public void lock(Mat gray, ArrayList<Point> corners) {
+        for (int i = 0; i < mFilters.length; i++) {
+            Point corner = corners.get(i);
+            // At rest, with a few pixels of uncertainty
+            mLockStates[i].put(0, 0, (float) corner.x, (float) corner.y, 0, 0);
+            mLockErrorCovs[i].put(0, 0, LOCK_ERROR_COV);
+            mFilters[i].set_statePost(mLockStates[i]);
+            mFilters[i].set_errorCovPost(mLockErrorCovs[i]);
+        }
+        mLocked = true;
+        mMisses = 0;
+    }
+
+    @Override
+    public ArrayList<Point> track(Mat gray, double dx, double dy) {
+        if (!mLocked) {
+            return null;
+        }
+        mControl.put(0, 0, (float) dx, (float) dy);
+
+        ArrayList<Point> corners = new ArrayList<>(4);
+        int found = 0;
+        mProcessedPixels = 0;
+        for (KalmanFilter filter : mFilters) {
+            filter.predict(mControl).get(0, 0, mVector);
+            Point predicted = new Point(mVector[0], mVector[1]);
+
+            Point measured = findCorner(gray, predicted);
+            if (measured != null) {
+                mMeasurement.put(0, 0, (float) measured.x, (float) measured.y);
+                filter.correct(mMeasurement).get(0, 0, mVector);
+                corners.add(new Point(mVector[0], mVector[1]));
+                found++;
+            } else {
+                // Keep the prediction, statePost has to follow it for the next frame
+                filter.get_statePre().copyTo(filter.get_statePost());
+                filter.get_errorCovPre().copyTo(filter.get_errorCovPost());
+                corners.add(predicted);
+            }
+        }
+
+        if (found == corners.size()) {
+            mMisses = 0;
+        } else if (++mMisses > MAX_MISSES || found < 2 || collapsed(corners)) {
+            mLocked = false;
+            return null;
+        }
+        return corners;
+    }
+
+    @Override
+    public void release() {
+        mWorkspace.release();
+        mControl.release();
+        mMeasurement.release();
+        for (int i = 0; i < mFilters.length; i++) {
+            mLockStates[i].release();
+            mLockErrorCovs[i].release();
+        }
+    }
+
+    // Strongest Harris response in the window around predicted, null when there is none
+    // or the window left the image
+    private Point findCorner(Mat gray, Point predicted) {
+        int size = Math.min(WINDOW, Math.min(gray.rows(), gray.cols()));
+        int left = (int) Math.round(predicted.x) - size / 2;
+        int top = (int) Math.round(predicted.y) - size / 2;
+        if (left + size <= 0 || top + size <= 0 || left >= gray.cols() || top >= gray.rows()) {
+            return null;
+        }
+        // Shifted back inside the image rather than cut, so the workspace keeps its size
+        left = Math.max(0, Math.min(left, gray.cols() - size));
+        top = Math.max(0, Math.min(top, gray.rows() - size));
+
+        Mat window = gray.submat(top, top + size, left, left + size);
+        CornerWorkspace ws = mWorkspace;
+        ws.ensureSize(size, size);
+        CornorDetect.edges(CornorDetect.blur(window, ws, mOptions.prefilter), ws);
+        CornorDetect.harris(ws);
+        window.release();
+        mProcessedPixels += (long) size * size;
+
+        Core.MinMaxLocResult response = Core.minMaxLoc(ws.harris);
+        if (response.maxVal <= MIN_RESPONSE) {
+            return null;
+        }
+        return new Point(response.maxLoc.x + left, response.maxLoc.y + top);
+    }
+
+    // Two corners converging on the same spot means the tracker locked onto one feature twice
+    private static boolean collapsed(ArrayList<Point> corners) {
+        for (int i = 0; i < corners.size(); i++) {
+            for (int j = i + 1; j < corners.size(); j++) {
+                Point a = corners.get(i);
+                Point b = corners.get(j);
+                if (Math.hypot(a.x - b.x, a.y - b.y) < WINDOW / 4) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // State x, y, vx, vy in pixels and pixels per frame, measurement x, y,
+    // control the image shift of the camera rotation
+    private static KalmanFilter createFilter() {
+        KalmanFilter filter = new KalmanFilter(4, 2, 2, CvType.CV_32F);
+        filter.set_transitionMatrix(matrix(4, 4,
+                1, 0, 1, 0,
+                0, 1, 0, 1,
+                0, 0, 1, 0,
+                0, 0, 0, 1));
+        filter.set_controlMatrix(matrix(4, 2,
+                1, 0,
+                0, 1,
+                0, 0,
+                0, 0));
+        filter.set_measurementMatrix(matrix(2, 4,
+                1, 0, 0, 0,
+                0, 1, 0, 0));
+        // Camera translation is not in the control input, the process noise has to cover it
+        filter.set_processNoiseCov(matrix(4, 4,
+                4, 0, 0, 0,
+                0, 4, 0, 0,
+                0, 0, 1, 0,
+                0, 0, 0, 1));
+        filter.set_measurementNoiseCov(matrix(2, 2,
+                2, 0,
+                0, 2));
+        return filter;
+    }
+
+    private static Mat matrix(int rows, int cols, float... values) {
+        Mat m = new Mat(rows, cols, CvType.CV_32F);
+        m.put(0, 0, values);
+        return m;
+    }
+}
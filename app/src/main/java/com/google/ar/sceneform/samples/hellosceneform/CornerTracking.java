@@ -0,0 +1,27 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+
+// Follows the corners of a full-frame detection through the next frames, so the live
+// detection only has to run the whole pipeline again when the tracking fails.
+// Implementations: CornerTracker (Kalman prediction, Harris in small windows) and
+// OpticalFlowTracker (pyramidal Lucas-Kanade). One thread at a time.
+public interface CornerTracking {
+
+    // Which implementation CornerDetectOptions.setTracking() asks for
+    enum Mode { NONE, KALMAN_WINDOWS, OPTICAL_FLOW }
+
+    boolean isLocked();
+
+    // Starts tracking the corners CornorDetect found in gray
+    void lock(Mat gray, ArrayList<Point> corners);
+
+    // Corners in gray, which has moved by (dx, dy) pixels against the previous frame due to
+    // the camera rotation (CameraMotion). Returns null and unlocks when the corners are lost.
+    ArrayList<Point> track(Mat gray, double dx, double dy);
+
+    void release();
+}
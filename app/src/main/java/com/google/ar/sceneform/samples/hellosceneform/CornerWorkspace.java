@@ -0,0 +1,91 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+
+// Scratch buffers of the CornorDetect pipeline. OpenCV only reallocates a Mat when
+// the requested size or type changes, so once the buffers have seen the first frame
+// a detection does not allocate native memory anymore.
+// A workspace must only be used by one thread at a time, CornorDetect keeps one per thread.
+public class CornerWorkspace {
+
+    final Mat blur = new Mat();
+    // Downscaled image of the median/box prefilters
+    final Mat prefilterSmall = new Mat();
+    final Mat canny = new Mat();
+    final Mat harris = new Mat();
+    final Mat mask = new Mat();
+
+    // Java side copy of mask, and the extracted x/y pairs of its non-zero pixels
+    byte[] maskData = new byte[0];
+    int[] xy = new int[0];
+    // Spatial index over xy for the corner clustering
+    final CornerGrid grid = new CornerGrid();
+
+    // pyrDown levels of the input, mPyramid[i] is level i + 1
+    private Mat[] mPyramid = new Mat[0];
+    // Corners handed to cornerSubPix, as a Mat and as its Java side copy
+    final Mat corners = new Mat();
+    final float[] cornerData = new float[8];
+
+    private int mRows;
+    private int mCols;
+
+    // Returns gray downscaled by 2^levels, gray itself for 0 levels
+    Mat downscale(Mat gray, int levels) {
+        if (mPyramid.length < levels) {
+            Mat[] pyramid = new Mat[levels];
+            System.arraycopy(mPyramid, 0, pyramid, 0, mPyramid.length);
+            for (int i = mPyramid.length; i < levels; i++) {
+                pyramid[i] = new Mat();
+            }
+            mPyramid = pyramid;
+        }
+        Mat level = gray;
+        for (int i = 0; i < levels; i++) {
+            Imgproc.pyrDown(level, mPyramid[i]);
+            level = mPyramid[i];
+        }
+        return level;
+    }
+
+    // Drops the detection buffers when the resolution changes, they are then reallocated once for the new size
+    void ensureSize(int rows, int cols) {
+        if (rows == mRows && cols == mCols) {
+            return;
+        }
+        releaseStages();
+        maskData = new byte[rows * cols];
+        mRows = rows;
+        mCols = cols;
+    }
+
+    // Makes room for count x/y pairs, keeping the pairs already collected
+    void ensureCandidates(int count) {
+        if (xy.length < count * 2) {
+            xy = Arrays.copyOf(xy, Math.max(count * 2, xy.length * 3 / 2));
+        }
+    }
+
+    public void release() {
+        releaseStages();
+        for (Mat level : mPyramid) {
+            level.release();
+        }
+        corners.release();
+    }
+
+    private void releaseStages() {
+        blur.release();
+        prefilterSmall.release();
+        canny.release();
+        harris.release();
+        mask.release();
+        maskData = new byte[0];
+        xy = new int[0];
+        mRows = 0;
+        mCols = 0;
+    }
+}
@@ -1,160 +1,198 @@
 package com.google.ar.sceneform.samples.hellosceneform;
 
-import android.app.Activity;
-import android.content.Intent;
-import android.graphics.Bitmap;
-import android.content.ContextWrapper;
-import android.net.Uri;
-import android.os.Environment;
-import android.provider.MediaStore;
-import android.util.Log;
-import android.widget.Toast;
-
-import org.opencv.android.Utils;
 import org.opencv.core.Core;
-import org.opencv.core.CvException;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
 import org.opencv.imgproc.Imgproc;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 
+// Android-free on purpose: the benchmark module compiles this file against desktop OpenCV.
 public class CornorDetect {
 
-    private static final String TAG = "CornorDetect";
+    private static final Scalar HARRIS_THRESHOLD = new Scalar(0.00001);
 
-    public static ArrayList<Point> getCorner(Bitmap bitmap){
+    private static final Size NO_ZERO_ZONE = new Size(-1, -1);
+    private static final TermCriteria SUB_PIX_CRITERIA =
+            new TermCriteria(TermCriteria.EPS + TermCriteria.COUNT, 20, 0.03);
 
+    // Options of getCorner(gray), never handed out
+    private static final CornerDetectOptions DEFAULT_OPTIONS = CornerDetectOptions.defaults();
 
-        // Original image
-        Mat img = new Mat();
-        Utils.bitmapToMat(bitmap,img);
-        System.out.println("img = " + img);
+    // Scratch Mats of the detection, one set per calling thread
+    private static final ThreadLocal<CornerWorkspace> WORKSPACE = new ThreadLocal<>();
 
+    // Runs the detection on a single channel image, e.g. the Y plane from
+    // UtilsBitmap.imageToGray() or a Bitmap through UtilsBitmap.bitmapToGray()
+    public static ArrayList<Point> getCorner(Mat gray){
+        return getCorner(gray, DEFAULT_OPTIONS);
+    }
 
-        // Grayscale image
-        Mat gray = new Mat();
-        Imgproc.cvtColor(img,gray,Imgproc.COLOR_BGR2GRAY);
-        System.out.println("gray = " + gray);
+    public static ArrayList<Point> getCorner(Mat gray, CornerDetectOptions options){
+        CornerWorkspace ws = WORKSPACE.get();
+        if (ws == null) {
+            ws = new CornerWorkspace();
+            WORKSPACE.set(ws);
+        }
+        return getCorner(gray, ws, options);
+    }
 
+    public static ArrayList<Point> getCorner(Mat gray, CornerWorkspace ws, CornerDetectOptions options){
+        PipelineMetrics metrics = options.metrics;
+        long t = metrics.now();
+
+        // Image the detection runs on, gray itself or a pyrDown level of it
+        Mat level = ws.downscale(gray, options.pyramidLevels);
+        ws.ensureSize(level.rows(), level.cols());
+        t = metrics.record(PipelineMetrics.Stage.PYRAMID, t);
 
         // Blurred image
-        Mat blur = new Mat();
-        Imgproc.bilateralFilter(gray, blur, 10, 100, 100);
+        Mat filtered = blur(level, ws, options.prefilter);
+        t = metrics.record(PipelineMetrics.Stage.PREFILTER, t);
 
         // Edge detection
-        Mat canny = new Mat();
-        Imgproc.Canny(blur,canny,20,150);
+        edges(filtered, ws);
+        t = metrics.record(PipelineMetrics.Stage.CANNY, t);
 
         //Corner detection
-        Mat dst = new Mat();
-        Imgproc.cornerHarris(canny, dst, 2, 3, 0.04);
-
-        //Get Corner points
-        Mat dst_norm = new Mat();
-        Core.normalize(dst, dst_norm,0,255,Core.NORM_MINMAX, CvType.CV_32FC1,new Mat());
-
-        Mat harrisCorner = new Mat();
-        Imgproc.threshold(dst, harrisCorner, 0.00001, 255, Imgproc.THRESH_BINARY);
-
-        System.out.println("harrisCorner.shape = (" + harrisCorner.height() + ", " + harrisCorner.width() + ")");
+        harris(ws);
+        t = metrics.record(PipelineMetrics.Stage.HARRIS, t);
 
         // Extract corner coordinates
-        ArrayList<Point> points = new ArrayList<>();
-        for (int i = 0; i < harrisCorner.rows(); i++) {
-            for (int j = 0; j < harrisCorner.cols(); j++) {
-                double[] temp = harrisCorner.get(i,j);
-                for (double value : temp) {
-                    if (value>0){
-                        points.add(new Point(j, i));
-                        System.out.println("row: "+i+"\tcol: "+j);
-                        Log.d(TAG, "getCorner: "+ "row: "+i+"\tcol: "+j);
-                    }
-                }
-            }
-        }
-
-        int gap = Math.min(img.rows(),img.cols()) / 2;
-        System.out.println("gap = " + gap);
-        System.out.println("points.size() = " + points.size());
-        if (points.size()<5){
+        int count = extract(ws);
+        t = metrics.record(PipelineMetrics.Stage.EXTRACT, t);
 
-            img.release();
+        if (count<5){
             return null;
         }else {
-            points = getPoint(points);
-            for (Point point: points) {
-                System.out.println("point = " + point);
+            ArrayList<Point> points = getPoint(ws, count, level.cols(), level.rows());
+            t = metrics.record(PipelineMetrics.Stage.CLUSTER, t);
+            if (points == null){
+                return null;
+            }
+            if (options.pyramidLevels > 0){
+                refineCorners(gray, points, options.getScale(), ws);
+                metrics.record(PipelineMetrics.Stage.REFINE, t);
             }
-
-            img.release();
             return points;
         }
     }
 
+    // The pipeline stages work on the buffers of the workspace and are package-private
+    // so the benchmark module can time them one by one.
 
-    private static ArrayList<Point> getPoint(ArrayList<Point> points) {
-       /* points.add(new Point(0,0));
-        points.add(new Point(0,1));
-        points.add(new Point(1,0));
-        points.add(new Point(0,100));
-        points.add(new Point(0,101));
-        points.add(new Point(1,100));
-        points.add(new Point(100,0));
-        points.add(new Point(100,1));
-        points.add(new Point(101,0));
-        points.add(new Point(100,100));
-        points.add(new Point(100,101));
-        points.add(new Point(101,100));*/
-
-        Point z0 = points.get(0);
-        Point z1 = null;
-        Point z2 = null;
-        Point z3 = null;
-
-        z1 = getFarthest(z0, points);
-        double T = distance(z0,z1) / 4;
-        points = removePoints(z1, points,T);
-        z2 = getFarthest(z0,points);
-        points = removePoints(z2, points,T);
-        z3 = getFarthest(z0,points);
-
-        ArrayList<Point> results = new ArrayList<>();
-        results.add(z0);
-        results.add(z1);
-        results.add(z2);
-        results.add(z3);
-        return results;
+    // Returns the image for Canny, ws.blur or level itself for Prefilter.none()
+    static Mat blur(Mat level, CornerWorkspace ws, Prefilter prefilter){
+        return prefilter.apply(level, ws.blur, ws);
+    }
+
+    static void edges(Mat filtered, CornerWorkspace ws){
+        Imgproc.Canny(filtered, ws.canny, 20, 150);
+    }
+
+    static void harris(CornerWorkspace ws){
+        Imgproc.cornerHarris(ws.canny, ws.harris, 2, 3, 0.04);
+    }
+
+    // Thresholds the Harris response and collects the corner candidates into ws.xy
+    static int extract(CornerWorkspace ws){
+        // Same as THRESH_BINARY at 0.00001, but straight into an 8 bit mask
+        Core.compare(ws.harris, HARRIS_THRESHOLD, ws.mask, Core.CMP_GT);
+        return getNonZero(ws);
     }
 
-    private static ArrayList<Point> removePoints(Point z, ArrayList<Point> points, double T){
-        Iterator<Point> iterator = points.iterator();
-        while (iterator.hasNext()){
-            if (distance(iterator.next(),z)<T) iterator.remove();
+    // Maps corners found on a pyramid level back to the full image and refines them there.
+    // cornerSubPix only looks at a small window around every corner, the window covers
+    // the position uncertainty of one pixel on the detection level.
+    static void refineCorners(Mat gray, ArrayList<Point> points, int scale, CornerWorkspace ws){
+        float[] xy = ws.cornerData;
+        for (int k = 0; k < points.size(); k++) {
+            // Center of the block of full resolution pixels behind the level pixel
+            xy[2 * k] = (float) (points.get(k).x * scale + (scale - 1) / 2.0);
+            xy[2 * k + 1] = (float) (points.get(k).y * scale + (scale - 1) / 2.0);
+        }
+        ws.corners.create(points.size(), 1, CvType.CV_32FC2);
+        ws.corners.put(0, 0, xy);
+
+        Size window = new Size(scale + 2, scale + 2);
+        Imgproc.cornerSubPix(gray, ws.corners, window, NO_ZERO_ZONE, SUB_PIX_CRITERIA);
+
+        ws.corners.get(0, 0, xy);
+        for (int k = 0; k < points.size(); k++) {
+            points.get(k).x = xy[2 * k];
+            points.get(k).y = xy[2 * k + 1];
         }
-        return points;
     }
 
-    private static Point getFarthest(Point z, ArrayList<Point> points){
-        double max = 0;
-        Point temp = null;
-        for (Point point: points) {
-            if (max < distance(z,point)){
-                max = distance(z,point);
-                temp = point;
+    // Frees the workspace of the calling thread. It is recreated on the next detection.
+    public static void releaseWorkspace(){
+        CornerWorkspace ws = WORKSPACE.get();
+        if (ws != null) {
+            ws.release();
+            WORKSPACE.remove();
+        }
+    }
+
+    // Coordinates of all non-zero pixels of ws.mask in row-major order, interleaved as
+    // x0, y0, x1, y1, ... in ws.xy. The mask is read with a single transfer into a reused array,
+    // unlike Core.findNonZero whose output Mat changes size (and is reallocated) every frame.
+    static int getNonZero(CornerWorkspace ws){
+        int cols = ws.mask.cols();
+        int total = (int) ws.mask.total();
+        byte[] data = ws.maskData;
+        ws.mask.get(0, 0, data);
+
+        int count = 0;
+        for (int i = 0; i < total; i++) {
+            if (data[i] != 0) {
+                ws.ensureCandidates(count + 1);
+                ws.xy[2 * count] = i % cols;
+                ws.xy[2 * count + 1] = i / cols;
+                count++;
             }
         }
-        return temp;
+        return count;
     }
 
-    private static double distance(Point p1, Point p2){
-        double dx = p1.x-p2.x;
-        double dy = p1.y - p2.y;
-        return Math.sqrt(dx*dx+dy*dy);
+    // Picks the four corners out of the candidates in ws.xy: z1 is the candidate farthest
+    // from the first one (z0), z2 and z3 the farthest ones left after dropping everything
+    // within a quarter of |z0 z1| around the previous pick.
+    // Returns null when the candidates run out before all four are found.
+    static ArrayList<Point> getPoint(CornerWorkspace ws, int count, int width, int height) {
+        CornerGrid grid = ws.grid;
+        grid.build(ws.xy, count, width, height);
+
+        int x0 = grid.x(0);
+        int y0 = grid.y(0);
+
+        int z1 = grid.farthest(x0, y0);
+        if (z1 < 0) {
+            return null;
+        }
+        // (distance(z0, z1) / 4)^2
+        double T2 = grid.distanceSquared(z1, x0, y0) / 16.0;
+        grid.removeWithin(grid.x(z1), grid.y(z1), T2);
+
+        int z2 = grid.farthest(x0, y0);
+        if (z2 < 0) {
+            return null;
+        }
+        grid.removeWithin(grid.x(z2), grid.y(z2), T2);
+
+        int z3 = grid.farthest(x0, y0);
+        if (z3 < 0) {
+            return null;
+        }
+
+        ArrayList<Point> results = new ArrayList<>(4);
+        results.add(new Point(x0, y0));
+        results.add(new Point(grid.x(z1), grid.y(z1)));
+        results.add(new Point(grid.x(z2), grid.y(z2)));
+        results.add(new Point(grid.x(z3), grid.y(z3)));
+        return results;
     }
 }
@@ -0,0 +1,201 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Cheap check in front of the corner detection: motion blurred frames (low variance of the
+// Laplacian) and badly exposed frames (mean and share of clipped pixels) are rejected before
+// the pipeline runs, everything measured on a DOWNSCALE times smaller copy of the Y plane.
+// The exposure comes from one calcHist pass: the mean and both clipped shares are sums
+// over its bins.
+// Whether ARCore tracks is a separate check, acceptTracking(), for the paths that need the
+// world (hit tests and anchors); the image-space detection and SheetMeasurer do not.
+//
+// The PLACEHOLDER_ thresholds are not calibrated: they were only checked against the synthetic
+// frames of the tests, so that a bright sheet filling the frame passes and nothing but clearly
+// unusable frames is rejected. They have not been measured on device captures; callers have
+// to set their own with the setters. check() allocates nothing after the first frame.
+// Android-free like CornorDetect. check() on one thread at a time, the counters may be read
+// from any thread.
+public class FrameQualityGate {
+
+    public enum Verdict { OK, NOT_TRACKING, BLURRED, TOO_DARK, TOO_BRIGHT }
+
+    // Half resolution still tells 3 px of blur from a sharp frame, a quarter does not
+    static final int DOWNSCALE = 2;
+    // Placeholders, see above. Sharp synthetic frames are at about 290, a Gaussian blur of
+    // sigma 3 brings them to 10.
+    static final double PLACEHOLDER_MIN_SHARPNESS = 20;
+    static final double PLACEHOLDER_MIN_MEAN = 30;
+    static final double PLACEHOLDER_MAX_MEAN = 245;
+    static final double PLACEHOLDER_MAX_CLIPPED = 0.75;
+    // Levels that count as clipped, the sensor's black and white ends
+    private static final int DARK_LEVEL = 5;
+    private static final int BRIGHT_LEVEL = 250;
+    private static final int LEVELS = 256;
+
+    // Variance of the Laplacian of the downscaled frame below which it counts as blurred
+    private double mMinSharpness = PLACEHOLDER_MIN_SHARPNESS;
+    private double mMinMean = PLACEHOLDER_MIN_MEAN;
+    private double mMaxMean = PLACEHOLDER_MAX_MEAN;
+    // Share of clipped pixels that makes a frame under or over exposed
+    private double mMaxClipped = PLACEHOLDER_MAX_CLIPPED;
+
+    private final Size mSmallSize = new Size();
+    private final Mat mSmall = new Mat();
+    private final Mat mLaplacian = new Mat();
+    private final MatOfDouble mMean = new MatOfDouble();
+    private final MatOfDouble mStdDev = new MatOfDouble();
+    private final double[] mValue = new double[1];
+
+    // calcHist arguments, one 256 bin histogram of mSmall
+    private final List<Mat> mHistImages = Collections.singletonList(mSmall);
+    private final MatOfInt mHistChannels = new MatOfInt(0);
+    private final MatOfInt mHistSize = new MatOfInt(LEVELS);
+    private final MatOfFloat mHistRange = new MatOfFloat(0, LEVELS);
+    private final Mat mNoMask = new Mat();
+    private final Mat mHist = new Mat();
+    private final float[] mBins = new float[LEVELS];
+
+    private final AtomicIntegerArray mCounts = new AtomicIntegerArray(Verdict.values().length);
+
+    public FrameQualityGate setMinSharpness(double sharpness) {
+        if (sharpness < 0)
+            throw new IllegalArgumentException("Sharpness must not be negative: " + sharpness);
+        mMinSharpness = sharpness;
+        return this;
+    }
+
+    public double getMinSharpness() {
+        return mMinSharpness;
+    }
+
+    // Mean gray level a frame must have, in [0, 255]
+    public FrameQualityGate setMeanRange(double min, double max) {
+        if (min < 0 || max > 255 || min > max)
+            throw new IllegalArgumentException("Mean range must be within [0, 255]: " + min + " .. " + max);
+        mMinMean = min;
+        mMaxMean = max;
+        return this;
+    }
+
+    public double getMinMean() {
+        return mMinMean;
+    }
+
+    public double getMaxMean() {
+        return mMaxMean;
+    }
+
+    public FrameQualityGate setMaxClipped(double share) {
+        if (share < 0 || share > 1)
+            throw new IllegalArgumentException("Clipped share must be in [0, 1]: " + share);
+        mMaxClipped = share;
+        return this;
+    }
+
+    public double getMaxClipped() {
+        return mMaxClipped;
+    }
+
+    // Called with the tracking state of the frame where the result goes into the world
+    public boolean acceptTracking(boolean tracking) {
+        if (!tracking) {
+            mCounts.incrementAndGet(Verdict.NOT_TRACKING.ordinal());
+        }
+        return tracking;
+    }
+
+    public Verdict check(Mat gray) {
+        mSmallSize.width = gray.cols() / DOWNSCALE;
+        mSmallSize.height = gray.rows() / DOWNSCALE;
+        Imgproc.resize(gray, mSmall, mSmallSize, 0, 0, Imgproc.INTER_AREA);
+        Verdict verdict = exposure();
+        if (verdict == Verdict.OK) {
+            Imgproc.Laplacian(mSmall, mLaplacian, CvType.CV_16S);
+            Core.meanStdDev(mLaplacian, mMean, mStdDev);
+            mStdDev.get(0, 0, mValue);
+            if (mValue[0] * mValue[0] < mMinSharpness) {
+                verdict = Verdict.BLURRED;
+            }
+        }
+        mCounts.incrementAndGet(verdict.ordinal());
+        return verdict;
+    }
+
+    public int getCount(Verdict verdict) {
+        return mCounts.get(verdict.ordinal());
+    }
+
+    public int getRejected() {
+        int rejected = 0;
+        for (Verdict verdict : Verdict.values()) {
+            if (verdict != Verdict.OK) {
+                rejected += mCounts.get(verdict.ordinal());
+            }
+        }
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("FrameQualityGate");
+        for (Verdict verdict : Verdict.values()) {
+            text.append(String.format(Locale.US, " %s=%d", verdict.name().toLowerCase(Locale.US),
+                    mCounts.get(verdict.ordinal())));
+        }
+        return text.toString();
+    }
+
+    public void release() {
+        mSmall.release();
+        mLaplacian.release();
+        mMean.release();
+        mStdDev.release();
+        mHistChannels.release();
+        mHistSize.release();
+        mHistRange.release();
+        mNoMask.release();
+        mHist.release();
+    }
+
+    // Mean of the downscaled frame and the shares of its pixels at either end, all from one
+    // histogram instead of a mean pass plus a compare and count pass per end
+    private Verdict exposure() {
+        Imgproc.calcHist(mHistImages, mHistChannels, mNoMask, mHist, mHistSize, mHistRange);
+        mHist.get(0, 0, mBins);
+
+        double total = mSmall.total();
+        double sum = 0;
+        double dark = 0;
+        double bright = 0;
+        for (int level = 0; level < LEVELS; level++) {
+            sum += level * (double) mBins[level];
+            if (level <= DARK_LEVEL) {
+                dark += mBins[level];
+            } else if (level >= BRIGHT_LEVEL) {
+                bright += mBins[level];
+            }
+        }
+        double mean = sum / total;
+
+        if (mean < mMinMean || dark > mMaxClipped * total) {
+            return Verdict.TOO_DARK;
+        }
+        if (mean > mMaxMean || bright > mMaxClipped * total) {
+            return Verdict.TOO_BRIGHT;
+        }
+        return Verdict.OK;
+    }
+}
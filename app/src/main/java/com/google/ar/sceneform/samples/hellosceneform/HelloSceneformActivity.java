@@ -4,32 +4,30 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.ActivityManager;
 import android.content.Context;
-import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.media.Image;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.os.Environment;
-import android.provider.MediaStore;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.Display;
 import android.view.MotionEvent;
+import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.chaquo.python.PyObject;
 import com.chaquo.python.Python;
-import com.chaquo.python.android.AndroidPlatform;
 import com.google.ar.core.Anchor;
 import com.google.ar.core.Frame;
 import com.google.ar.core.HitResult;
 import com.google.ar.core.Plane;
 import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
 import com.google.ar.core.exceptions.NotYetAvailableException;
 import com.google.ar.sceneform.AnchorNode;
 import com.google.ar.sceneform.Camera;
@@ -52,19 +50,22 @@ import com.google.ar.sceneform.ux.TransformableNode;
 import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
+import org.opencv.android.Utils;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 import image_transformer.BasicTransformer;
@@ -77,17 +78,55 @@ import main.BasicAdder;
 public class HelloSceneformActivity extends AppCompatActivity implements Node.OnTapListener, Scene.OnUpdateListener {
     private static final String TAG = HelloSceneformActivity.class.getSimpleName();
     private static final double MIN_OPENGL_VERSION = 3.0;
+    // Bars between the measured points
+    private static final Color SEGMENT_COLOR = new Color(0, 255, 244);
+    private static final float SEGMENT_THICKNESS = .01f;
+    private static final long METRICS_REFRESH_MS = 500;
 
-    ArrayList<Float> arrayList1 = new ArrayList<>();
-    ArrayList<Float> arrayList2 = new ArrayList<>();
+    // Points of the length, MyAction and list modes
+    private final MeasurementEngine measurement = new MeasurementEngine();
     private ArFragment arFragment;
     private AnchorNode lastAnchorNode;
-    private TextView txtDistance;
-    Button btnDist, btnHeight, btnClear, btnMyAction, btnTestHit, btnTakePhoto, btnMyActionList, btnTestPython;
-    PrintStream pPRINT = null;
+    private TextView txtDistance, txtMetrics;
+    Button btnDist, btnHeight, btnClear, btnMyAction, btnTestHit, btnTakePhoto, btnMyActionList, btnTestPython, btnLiveDetect, btnMetrics;
+    // Measurements of the list mode, null when the storage is not available
+    private MeasurementJournal journal;
+    // Poses of the last journal record, reused for every record
+    private final float[] journalFrom = new float[MeasurementJournal.POSE_FLOATS];
+    private final float[] journalTo = new float[MeasurementJournal.POSE_FLOATS];
     ModelRenderable cubeRenderable, heightRenderable;
     boolean btnHeightClicked, btnLengthClicked, btnMyActionClicked, btnTestHitClicked, btnTakePhotoClicked, btnMyActionListClicked;
     Vector3 point1, point2;
+    // Color path for saving the captured frames, created once OpenCV is loaded
+    private YuvConverter yuvConverter;
+    // Pipeline settings for this device, see createDetectOptions()
+    private CornerDetectOptions detectOptions;
+    // Live corner detection driven by onUpdate
+    private CornerDetectionWorker cornerWorker;
+    private boolean liveDetectionEnabled;
+    private long lastLiveFrameTimestamp;
+    private final Node[] liveCornerNodes = new Node[4];
+    // Camera image to world projection of detected corners
+    private final CornerProjector cornerProjector = new CornerProjector();
+    // Encodes and saves the captured frames off the UI thread
+    private ImageSaveQueue imageSaveQueue;
+    // OpenCV, Python and the renderables, all loading in parallel from onCreate
+    private StartupOrchestrator startup;
+    // Shared materials and unit cubes for the measurement visuals
+    private RenderableCache renderableCache;
+    // Every measured segment of the session, in one mesh
+    private PolylineOverlay measurementOverlay;
+    // Foot size from the detected A4 sheet, created with the first photo
+    private SheetMeasurer sheetMeasurer;
+    // Rejects blurred, badly exposed and untracked photos before the detection
+    private FrameQualityGate photoGate;
+    // Set on the main thread once either the packaged natives or OpenCV Manager are loaded
+    private boolean openCvLoaded;
+    // Set on the main thread when neither could be loaded
+    private boolean openCvFailed;
+    // Latency of every stage from capture to anchor, recording starts with OpenCV
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private long lastMetricsRefresh;
 
     @SuppressLint("SetTextI18n")
     @Override
@@ -101,9 +140,32 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
 
         Toast.makeText(getApplicationContext(), "Start", Toast.LENGTH_SHORT).show();
 
+        detectOptions = createDetectOptions();
+        startup = new StartupOrchestrator(getApplicationContext(), detectOptions);
+        startup.start();
+        startup.openCv().whenCompleteAsync((loaded, e) -> {
+            if (e != null) {
+                // The packaged natives threw, OpenCV Manager may still provide them
+                Log.e(TAG, "OpenCV startup failed", e);
+                onOpenCvLoaded(false);
+            } else {
+                onOpenCvLoaded(loaded);
+            }
+        }, getMainExecutor());
+        startup.python().whenComplete((bridge, e) -> reportStartupFailure("Python", e));
+        try {
+            journal = MeasurementJournal.open(journalDir());
+        } catch (IOException e) {
+            Log.e(TAG, "Measurement journal not available", e);
+        }
+        imageSaveQueue = new ImageSaveQueue(this, galleryDir(), 4, ImageSaveQueue.Codec.JPEG, 90,
+                ImageSaveQueue.Overflow.DROP_OLDEST,
+                file -> Toast.makeText(this, "Finish saving！", Toast.LENGTH_SHORT).show());
+
         setContentView(R.layout.activity_ux);
         arFragment = (ArFragment) getSupportFragmentManager().findFragmentById(R.id.ux_fragment);
         txtDistance = findViewById(R.id.txtDistance);
+        txtMetrics = findViewById(R.id.txtMetrics);
         btnDist = findViewById(R.id.btnDistance);
         btnDist.setOnClickListener(v -> {
             btnLengthClicked = true;
@@ -158,8 +220,13 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
         btnTestPython = findViewById(R.id.btnTestPython);
         btnTestPython.setOnClickListener(v -> {
 
-            if (! Python.isStarted()){
-                Python.start(new AndroidPlatform(getApplicationContext()));
+            if (!startup.python().isDone()) {
+                Toast.makeText(this, "Python is still starting", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (startup.python().isCompletedExceptionally()) {
+                Toast.makeText(this, "Python failed to load", Toast.LENGTH_SHORT).show();
+                return;
             }
             Python py = Python.getInstance();
 //            try {
@@ -178,18 +245,34 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
 ////                assertSame(ba_po, PyObject.fromJava(ba));
 //            } catch (Exception e) {
 //                e.printStackTrace();
+//            }
+
+//            try {
+//                PyObject BA = py.getModule("image_transformer").get("BasicTransformer");
+//                PyObject ba_po = BA.call(22);
+//                BasicTransformer ba = ba_po.toJava(BasicTransformer.class);
+//                int[] x = new int[] {1, 2, 3};
+//                int[] y = ba.array_add(x);
+//                int a = (int) y[0];
+//                Toast.makeText(this, "1+3: " + String.valueOf(a), Toast.LENGTH_SHORT).show();
+////                assertEquals(45, ba.add(3));
+////                assertSame(ba_po, PyObject.fromJava(ba));
+//            } catch (Exception e) {
+//                e.printStackTrace();
 //            }
 
             try {
-                PyObject BA = py.getModule("image_transformer").get("BasicTransformer");
-                PyObject ba_po = BA.call(22);
-                BasicTransformer ba = ba_po.toJava(BasicTransformer.class);
-                int[] x = new int[] {1, 2, 3};
-                int[] y = ba.array_add(x);
-                int a = (int) y[0];
+                PythonFrameBridge pythonBridge = startup.python().join();
+                // Same test as array_add, but through memory shared with numpy
+                ByteBuffer buffer = ByteBuffer.allocateDirect(3);
+                buffer.put(new byte[] {1, 2, 3});
+                Mat x = PythonFrameBridge.wrap(buffer, 1, 3, CvType.CV_8UC1);
+                Mat y = new Mat();
+                pythonBridge.process("add3", x, y);
+                int a = (int) y.get(0, 0)[0];
+                x.release();
+                y.release();
                 Toast.makeText(this, "1+3: " + String.valueOf(a), Toast.LENGTH_SHORT).show();
-//                assertEquals(45, ba.add(3));
-//                assertSame(ba_po, PyObject.fromJava(ba));
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -198,21 +281,54 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
         });
         btnTakePhoto = findViewById(R.id.btnTakePhoto);
         btnTakePhoto.setOnClickListener(v -> {
+            if (!openCvReady()) {
+                return;
+            }
             Toast.makeText(this, "Convert！", Toast.LENGTH_SHORT).show();
-            // Get Bitmap for corner detection
-            Bitmap bitmap = getBitmapFromView();
+            long t = metrics.now();
+            Image image = acquireCameraImage();
+            metrics.record(PipelineMetrics.Stage.CAPTURE, t);
+            if (image == null){
+                Toast.makeText(this, "Camera image is not available", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Mat gray = new Mat();
+            Bitmap bitmap;
+            try {
+                // Get gray image for corner detection straight from the Y plane
+                t = metrics.now();
+                UtilsBitmap.imageToGray(image, gray);
+                metrics.record(PipelineMetrics.Stage.ROTATE, t);
+                // Get Bitmap for saving
+                bitmap = getBitmapFromImage(image);
+            } finally {
+                image.close();
+            }
 
             // БОЛЬШОЙ КОСТЫЛЬ!!!!
             Bitmap newbitmap = Bitmap.createBitmap(bitmap,92, 0, bitmap.getWidth() - 92 * 2, bitmap.getHeight());
-            // Save Bitmap to album
-            saveBmp2Gallery(newbitmap,"aaaa_");
+            // Save Bitmap to album, the queue recycles both once they are written
+            imageSaveQueue.save(newbitmap,"aaaa_");
 
             // Save Bitmap to album
-            saveBmp2Gallery(bitmap,"aaaa");
+            imageSaveQueue.save(bitmap,"aaaa");
+
 
+            if (photoGate == null) {
+                photoGate = new FrameQualityGate();
+            }
+            t = metrics.now();
+            FrameQualityGate.Verdict verdict = photoGate.check(gray);
+            metrics.record(PipelineMetrics.Stage.QUALITY_GATE, t);
+            if (verdict != FrameQualityGate.Verdict.OK) {
+                gray.release();
+                Toast.makeText(this, "Frame rejected: " + verdict, Toast.LENGTH_SHORT).show();
+                return;
+            }
 
-            ArrayList<Point> points = CornorDetect.getCorner(bitmap);
+            ArrayList<Point> points = CornorDetect.getCorner(gray, detectOptions);
             if (points == null){
+                gray.release();
                 Toast.makeText(this, "Detection failed", Toast.LENGTH_SHORT).show();
             }else{
                 Log.d(TAG, "cornors: "+points.size());
@@ -222,42 +338,54 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
                 Log.d(TAG, "p4"+points.get(3).x+", "+points.get(3).y);
                 Toast.makeText(this, "Successful detection", Toast.LENGTH_SHORT).show();
 
-                showCornerAnchor(points);
+                if (sheetMeasurer == null) {
+                    sheetMeasurer = new SheetMeasurer();
+                }
+                // The sheet is the reference, no hit tests needed when the foot is found on it
+                SheetMeasurer.Result foot = sheetMeasurer.measure(gray, points);
+                gray.release();
+                if (foot != null) {
+                    txtDistance.setText(String.format(Locale.US, "Foot: %.0f x %.0f mm", foot.lengthMm, foot.widthMm));
+                } else {
+                    // Only the anchors need the world, the photo itself is fine without tracking
+                    Frame photoFrame = arFragment.getArSceneView().getArFrame();
+                    if (photoFrame != null
+                            && photoGate.acceptTracking(photoFrame.getCamera().getTrackingState() == TrackingState.TRACKING)) {
+                        showCornerAnchor(points);
+                    } else {
+                        Toast.makeText(this, "Corners found, not tracking to place them", Toast.LENGTH_SHORT).show();
+                    }
+                }
             }
         });
+        btnLiveDetect = findViewById(R.id.btnLiveDetect);
+        btnLiveDetect.setOnClickListener(v -> setLiveDetection(!liveDetectionEnabled));
+        btnMetrics = findViewById(R.id.btnMetrics);
+        btnMetrics.setOnClickListener(v -> {
+            txtMetrics.setVisibility(txtMetrics.getVisibility() == View.VISIBLE ? View.GONE : View.VISIBLE);
+            lastMetricsRefresh = 0;
+        });
+        btnMetrics.setOnLongClickListener(v -> {
+            dumpMetrics();
+            return true;
+        });
 
 
         btnClear = findViewById(R.id.clear);
         btnClear.setOnClickListener(v -> {
-            try {
-                if (pPRINT != null) {
-                    pPRINT.close();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
             onClear();
         });
 
-        MaterialFactory.makeTransparentWithColor(this, new Color(0F, 0F, 244F))
-                .thenAccept(
-                        material -> {
-                            Vector3 vector3 = new Vector3(0.01f, 0.01f, 0.01f);
-                            cubeRenderable = ShapeFactory.makeCube(vector3, Vector3.zero(), material);
-                            cubeRenderable.setShadowCaster(false);
-                            cubeRenderable.setShadowReceiver(false);
-                        });
-
-        MaterialFactory.makeTransparentWithColor(this, new Color(0F, 0F, 244F))
-                .thenAccept(
-                        material -> {
-                            Vector3 vector3 = new Vector3(0.007f, 0.1f, 0.007f);
-                            heightRenderable = ShapeFactory.makeCube(vector3, Vector3.zero(), material);
-                            heightRenderable.setShadowCaster(false);
-                            heightRenderable.setShadowReceiver(false);
-                        });
+        startup.cube().thenAccept(renderable -> cubeRenderable = renderable)
+                .whenComplete((v, e) -> reportStartupFailure("Markers", e));
+        renderableCache = new RenderableCache(this);
+        measurementOverlay = new PolylineOverlay(SEGMENT_THICKNESS, renderableCache.material(SEGMENT_COLOR));
+        startup.heightCube().thenAccept(renderable -> heightRenderable = renderable)
+                .whenComplete((v, e) -> reportStartupFailure("Height markers", e));
 
 
+        arFragment.getArSceneView().getScene().addOnUpdateListener(this);
+
         arFragment.setOnTapArPlaneListener(
                     (HitResult hitResult, Plane plane, MotionEvent motionEvent) -> {
                     if (cubeRenderable == null) {
@@ -291,15 +419,15 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
                             anchorNode.setParent(arFragment.getArSceneView().getScene());
 
                             Pose pose = anchor.getPose();
-                            if (arrayList1.isEmpty()) {
-                                arrayList1.add(pose.tx());
-                                arrayList1.add(pose.ty());
-                                arrayList1.add(pose.tz());
+                            if (measurement.getPointCount() == 0) {
+                                measurement.addPoint(pose.tx(), pose.ty(), pose.tz());
                             }
                             TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
                             transformableNode.setParent(anchorNode);
                             transformableNode.setRenderable(cubeRenderable);
                             transformableNode.select();
+                            measurementOverlay.breakStrip();
+                            addOverlayPoint(anchorNode, pose);
                             lastAnchorNode = anchorNode;
                         } else {
                             int val = motionEvent.getActionMasked();
@@ -312,49 +440,15 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
                             Pose pose = anchor.getPose();
 
 
-                            if (arrayList2.isEmpty()) {
-                                arrayList2.add(pose.tx());
-                                arrayList2.add(pose.ty());
-                                arrayList2.add(pose.tz());
-                                float d = getDistanceMeters(arrayList1, arrayList2);
-                                txtDistance.setText("Distance: " + String.valueOf(d));
-                            } else {
-                                arrayList1.clear();
-                                arrayList1.addAll(arrayList2);
-                                arrayList2.clear();
-                                arrayList2.add(pose.tx());
-                                arrayList2.add(pose.ty());
-                                arrayList2.add(pose.tz());
-                                float d = getDistanceMeters(arrayList1, arrayList2);
-                                txtDistance.setText("Distance: " + String.valueOf(d));
-                            }
+                            float d = measurement.addPoint(pose.tx(), pose.ty(), pose.tz());
+                            txtDistance.setText(distanceText(d));
 
                             TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
                             transformableNode.setParent(anchorNode);
                             transformableNode.setRenderable(cubeRenderable);
                             transformableNode.select();
 
-                            Vector3 point1, point2;
-                            point1 = lastAnchorNode.getWorldPosition();
-                            point2 = anchorNode.getWorldPosition();
-
-                            final Vector3 difference = Vector3.subtract(point1, point2);
-                            final Vector3 directionFromTopToBottom = difference.normalized();
-                            final Quaternion rotationFromAToB =
-                                    Quaternion.lookRotation(directionFromTopToBottom, Vector3.up());
-                            MaterialFactory.makeOpaqueWithColor(getApplicationContext(), new Color(0, 255, 244))
-                                    .thenAccept(
-                                            material -> {
-                                                ModelRenderable model = ShapeFactory.makeCube(
-                                                        new Vector3(.01f, .01f, difference.length()),
-                                                        Vector3.zero(), material);
-                                                Node node = new Node();
-                                                node.setParent(anchorNode);
-                                                node.setRenderable(model);
-                                                node.setWorldPosition(Vector3.add(point1, point2).scaled(.5f));
-                                                node.setWorldRotation(rotationFromAToB);
-                                            }
-                                    );
+                            addOverlayPoint(anchorNode, pose);
                             lastAnchorNode = anchorNode;
                         }
                     }
@@ -381,16 +475,16 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
                             }
 
                             Pose pose = anchor.getPose();
-                            if (arrayList1.isEmpty()) {
-                                arrayList1.add(pose.tx());
-                                arrayList1.add(pose.ty());
-                                arrayList1.add(pose.tz());
+                            if (measurement.getPointCount() == 0) {
+                                measurement.addPoint(pose.tx(), pose.ty(), pose.tz());
                             }
 
                             TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
                             transformableNode.setParent(anchorNode);
                             transformableNode.setRenderable(cubeRenderable);
                             transformableNode.select();
+                            measurementOverlay.breakStrip();
+                            addOverlayPoint(anchorNode, pose);
                             lastAnchorNode = anchorNode;
 
 //                            Toast.makeText(getApplicationContext(), "lastAnchorNode == null: " + String.valueOf(lastAnchorNode == null), Toast.LENGTH_SHORT).show();
@@ -440,51 +534,15 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
 //
                             Pose pose = anchor.getPose();
 
-                            if (arrayList2.isEmpty()) {
-                                arrayList2.add(pose.tx());
-                                arrayList2.add(pose.ty());
-                                arrayList2.add(pose.tz());
-                                float d = getDistanceMeters(arrayList1, arrayList2);
-                                txtDistance.setText("Distance: " + String.valueOf(d));
-                            } else {
-                                arrayList1.clear();
-                                arrayList1.addAll(arrayList2);
-                                arrayList2.clear();
-                                arrayList2.add(pose.tx());
-                                arrayList2.add(pose.ty());
-                                arrayList2.add(pose.tz());
-                                float d = getDistanceMeters(arrayList1, arrayList2);
-                                txtDistance.setText("Distance: " + String.valueOf(d));
-                            }
+                            float d = measurement.addPoint(pose.tx(), pose.ty(), pose.tz());
+                            txtDistance.setText(distanceText(d));
 
                             TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
                             transformableNode.setParent(anchorNode);
                             transformableNode.setRenderable(cubeRenderable);
                             transformableNode.select();
 
-                            Vector3 point1, point2;
-                            point1 = lastAnchorNode.getWorldPosition();
-                            point2 = anchorNode.getWorldPosition();
-
-                            final Vector3 difference = Vector3.subtract(point1, point2);
-                            final Vector3 directionFromTopToBottom = difference.normalized();
-                            final Quaternion rotationFromAToB =
-                                    Quaternion.lookRotation(directionFromTopToBottom, Vector3.up());
-
-                            AnchorNode finalAnchorNode = anchorNode;
-                            MaterialFactory.makeOpaqueWithColor(getApplicationContext(), new Color(0, 255, 244))
-                                    .thenAccept(
-                                            material -> {
-                                                ModelRenderable model = ShapeFactory.makeCube(
-                                                        new Vector3(.01f, .01f, difference.length()),
-                                                        Vector3.zero(), material);
-                                                Node node = new Node();
-                                                node.setParent(finalAnchorNode);
-                                                node.setRenderable(model);
-                                                node.setWorldPosition(Vector3.add(point1, point2).scaled(.5f));
-                                                node.setWorldRotation(rotationFromAToB);
-                                            }
-                                    );
+                            addOverlayPoint(anchorNode, pose);
                             lastAnchorNode = anchorNode;
                         }
                     }
@@ -511,16 +569,16 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
                             }
 
                             Pose pose = anchor.getPose();
-                            if (arrayList1.isEmpty()) {
-                                arrayList1.add(pose.tx());
-                                arrayList1.add(pose.ty());
-                                arrayList1.add(pose.tz());
+                            if (measurement.getPointCount() == 0) {
+                                measurement.addPoint(pose.tx(), pose.ty(), pose.tz());
                             }
 
                             TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
                             transformableNode.setParent(anchorNode);
                             transformableNode.setRenderable(cubeRenderable);
                             transformableNode.select();
+                            measurementOverlay.breakStrip();
+                            addOverlayPoint(anchorNode, pose);
                             lastAnchorNode = anchorNode;
 
 //                            Toast.makeText(getApplicationContext(), "lastAnchorNode == null: " + String.valueOf(lastAnchorNode == null), Toast.LENGTH_SHORT).show();
@@ -557,24 +615,9 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
 
                             Pose pose = anchor.getPose();
 
-                            if (arrayList2.isEmpty()) {
-                                arrayList2.add(pose.tx());
-                                arrayList2.add(pose.ty());
-                                arrayList2.add(pose.tz());
-                                float d = getDistanceMeters(arrayList1, arrayList2);
-                                txtDistance.setText("Distance: " + String.valueOf(d));
-                                writeFile( "measurements", String.valueOf(d));
-                            } else {
-                                arrayList1.clear();
-                                arrayList1.addAll(arrayList2);
-                                arrayList2.clear();
-                                arrayList2.add(pose.tx());
-                                arrayList2.add(pose.ty());
-                                arrayList2.add(pose.tz());
-                                float d = getDistanceMeters(arrayList1, arrayList2);
-                                txtDistance.setText("Distance: " + String.valueOf(d));
-                                writeFile( "measurements", String.valueOf(d));
-                            }
+                            float d = measurement.addPoint(pose.tx(), pose.ty(), pose.tz());
+                            txtDistance.setText(distanceText(d));
+                            journalMeasurement(lastAnchorNode.getAnchor().getPose(), pose, d);
 
 
                             TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
@@ -605,7 +648,13 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
 //                                                node.setWorldRotation(rotationFromAToB);
 //                                            }
 //                                    );
-                            lastAnchorNode.getAnchor().detach();
+                            // The overlay shows the path, the old point leaves the scene with its anchor.
+                            // Except the one the overlay hangs under.
+                            addOverlayPoint(anchorNode, pose);
+                            if (lastAnchorNode != measurementOverlay.getAnchor()) {
+                                lastAnchorNode.getAnchor().detach();
+                                lastAnchorNode.setParent(null);
+                            }
                             lastAnchorNode = anchorNode;
                         }
                     }
@@ -633,121 +682,275 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
                 case LoaderCallbackInterface.SUCCESS:
                 {
                     Log.i("OpenCV", "OpenCV loaded successfully");
+                    openCvLoaded = true;
+                    openCvFailed = false;
+                    metrics.setEnabled(true);
                     Mat imageMat=new Mat();
                 } break;
                 default:
                 {
+                    Log.e("OpenCV", "OpenCV Manager failed with status " + status);
+                    openCvFailed = true;
                     super.onManagerConnected(status);
                 } break;
             }
         }
     };
 
-    public void onResume() {
-        super.onResume();
-        if (!OpenCVLoader.initDebug()) {
+    private boolean openCvReady() {
+        if (openCvFailed) {
+            Toast.makeText(this, "OpenCV failed to load, detection is not available", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        if (!openCvLoaded) {
+            Toast.makeText(this, "OpenCV is still loading", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        return true;
+    }
+
+    // Once per process, StartupOrchestrator has already tried the natives in the package
+    private void onOpenCvLoaded(boolean loaded) {
+        if (!loaded) {
             Log.d("OpenCV", "Internal OpenCV library not found. Using OpenCV Manager for initialization");
-            OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_3_0_0, this, mLoaderCallback);
+            if (!OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION_3_0_0, this, mLoaderCallback)) {
+                Log.e("OpenCV", "OpenCV Manager is not available");
+                openCvFailed = true;
+                Toast.makeText(this, "OpenCV failed to load", Toast.LENGTH_LONG).show();
+            }
         } else {
             Log.d("OpenCV", "OpenCV library found inside package. Using it!");
             mLoaderCallback.onManagerConnected(LoaderCallbackInterface.SUCCESS);
         }
-    };
+    }
 
-    void writeFile(String name, String msg) {
+    // Logs and reports a part of the startup that failed, e is null when it did not.
+    // The rest of the app keeps working. Called on whichever thread completed the part.
+    private void reportStartupFailure(String part, Throwable e) {
+        if (e == null) {
+            return;
+        }
+        Log.e(TAG, part + " failed to load", e);
+        runOnUiThread(() -> Toast.makeText(this, part + " failed to load", Toast.LENGTH_LONG).show());
+    }
 
-        try {
-            if (pPRINT == null) {
-                String fileName = null;
-                FileOutputStream outStream = null;
-                //System album catalog
-                String filePath = Environment.getExternalStorageDirectory()
-                        + File.separator + Environment.DIRECTORY_DCIM
-                        + File.separator + "Out_stream" + File.separator;
-
-
-                // Declare file objects
-                File file = null;
-                // Declare output stream
-                //            FileOutputStream outStream = null;
-
-
-                // If there is a Target file, get the file object directly, otherwise create a file with filename as the name
-                file = new File(filePath, name + ".txt");
-
-                // Get file relative path
-                fileName = file.toString();
-                // Get the output stream, if there is content in the file, append the content
-                outStream = new FileOutputStream(fileName);
-                if (null != outStream) {
-                    pPRINT = new PrintStream(outStream);
-                    pPRINT.println(msg + "\n");
-                }
-            }else {
-                pPRINT.printf(msg + "\n");
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        setLiveDetection(false);
+        CornorDetect.releaseWorkspace();
+        if (sheetMeasurer != null) {
+            sheetMeasurer.release();
+        }
+        if (photoGate != null) {
+            Log.d(TAG, "photos: " + photoGate);
+            photoGate.release();
+        }
+        if (yuvConverter != null) {
+            yuvConverter.release();
+        }
+        if (imageSaveQueue != null) {
+            imageSaveQueue.shutdown();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Can not close the measurement journal", e);
             }
-        } catch (Exception e) {
-            e.getStackTrace();
-        }finally {
-//            try {
-//                if (outStream != null) {
-//                    outStream.close();
-//                }
-//            } catch (IOException e) {
-//                e.printStackTrace();
-//            }
         }
     }
 
+    // System album catalog, where the captured frames go
+    private static File galleryDir() {
+        return new File(Environment.getExternalStorageDirectory()
+                + File.separator + Environment.DIRECTORY_DCIM
+                + File.separator + "Camera");
+    }
+
+    // App storage, readable over adb without any permission
+    private File metricsDir() {
+        File dir = getExternalFilesDir("metrics");
+        return dir != null ? dir : new File(getFilesDir(), "metrics");
+    }
 
+    private void dumpMetrics() {
+        try {
+            File file = metrics.dump(metricsDir(), Build.MANUFACTURER + " " + Build.MODEL);
+            Toast.makeText(this, "Metrics saved to " + file, Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Can not save the pipeline metrics", e);
+        }
+    }
+
+    // Adds the anchored point to the overlay, the first one of a session also anchors the overlay
+    private void addOverlayPoint(AnchorNode anchorNode, Pose pose) {
+        if (measurementOverlay.getAnchor() == null) {
+            measurementOverlay.setAnchor(anchorNode);
+        }
+        measurementOverlay.addPoint(position(pose));
+    }
+
+    private static Vector3 position(Pose pose) {
+        return new Vector3(pose.tx(), pose.ty(), pose.tz());
+    }
+
+    // Journal directory, where writeFile() used to put its text file
+    private static File journalDir() {
+        return new File(Environment.getExternalStorageDirectory()
+                + File.separator + Environment.DIRECTORY_DCIM
+                + File.separator + "Out_stream");
+    }
+
+    private void journalMeasurement(Pose from, Pose to, float distance) {
+        if (journal == null) {
+            return;
+        }
+        from.getTranslation(journalFrom, 0);
+        from.getRotationQuaternion(journalFrom, 3);
+        to.getTranslation(journalTo, 0);
+        to.getRotationQuaternion(journalTo, 3);
+        try {
+            journal.append(System.currentTimeMillis(), MeasurementJournal.MODE_LIST, journalFrom, journalTo, distance);
+        } catch (IOException e) {
+            Log.e(TAG, "Can not journal the measurement", e);
+        }
+    }
+
+    // One anchor per corner, at the best hit of that corner
     private void showCornerAnchor(ArrayList<Point> points) {
-        AnchorNode anchorNode = new AnchorNode();
-        Anchor anchor = null;
-        List<HitResult> hitResults = null;
-
-        float phone_width, phone_height;
-        Display display = getWindowManager().getDefaultDisplay();
-        android.graphics.Point outSize = new android.graphics.Point();
-        display.getSize(outSize);
-        phone_width = outSize.x;
-        phone_height = outSize.y;
-        int pic_width = 480;
-        int pic_height = 640;
-
-        for (Point point : points) {
-            try {
-                Frame frame = arFragment.getArSceneView().getArFrame();
-                hitResults = frame.hitTest((float) point.x * phone_width / pic_width, (float) point.y * phone_height / pic_height + 100);
-
-                for (HitResult hitResult1 : hitResults) {
-                    anchor = hitResult1.createAnchor();
-                    anchorNode = new AnchorNode(anchor);
-                    anchorNode.setParent(arFragment.getArSceneView().getScene());
-
-                    TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
-                    transformableNode.setParent(anchorNode);
-                    transformableNode.setRenderable(cubeRenderable);
-                    transformableNode.select();
-                    lastAnchorNode = anchorNode;
+        Frame frame = arFragment.getArSceneView().getArFrame();
+        if (frame == null) {
+            return;
+        }
+        long t = metrics.now();
+        HitResult[] hits = cornerProjector.hitTest(frame, points);
+        t = metrics.record(PipelineMetrics.Stage.HIT_TEST, t);
+        int placed = 0;
+        for (HitResult hit : hits) {
+            if (hit == null) {
+                continue;
+            }
+            AnchorNode anchorNode = new AnchorNode(hit.createAnchor());
+            anchorNode.setParent(arFragment.getArSceneView().getScene());
+
+            TransformableNode transformableNode = new TransformableNode(arFragment.getTransformationSystem());
+            transformableNode.setParent(anchorNode);
+            transformableNode.setRenderable(cubeRenderable);
+            transformableNode.select();
+            lastAnchorNode = anchorNode;
+            placed++;
+        }
+        metrics.record(PipelineMetrics.Stage.ANCHOR, t);
+        Toast.makeText(getApplicationContext(), placed + "/" + hits.length + " corners placed", Toast.LENGTH_SHORT).show();
+    }
+
+    private void setLiveDetection(boolean enabled) {
+        if (enabled == liveDetectionEnabled) {
+            return;
+        }
+        if (enabled && !openCvReady()) {
+            return;
+        }
+        liveDetectionEnabled = enabled;
+        if (enabled) {
+            cornerWorker = new CornerDetectionWorker(detectOptions, this::showLiveCorners);
+            btnLiveDetect.setText(R.string.live_detect_stop);
+        } else {
+            cornerWorker.stop();
+            Log.d(TAG, "live detection stopped, dropped frames: " + cornerWorker.getDroppedFrames()
+                    + ", " + cornerWorker.getQualityGate() + "\n" + metrics);
+            cornerWorker = null;
+            for (Node node : liveCornerNodes) {
+                if (node != null) {
+                    node.setParent(null);
                 }
+            }
+            btnLiveDetect.setText(R.string.live_detect);
+        }
+    }
 
-            } catch (Exception exception) {
-                Toast.makeText(getApplicationContext(), "error: " + exception.getMessage(), Toast.LENGTH_SHORT).show();
+    // Hands the newest camera image to the worker. onUpdate also runs for frames
+    // without a new camera image, those are skipped by their timestamp.
+    private void submitLiveFrame(Frame frame) {
+        if (frame.getTimestamp() == lastLiveFrameTimestamp) {
+            return;
+        }
+        lastLiveFrameTimestamp = frame.getTimestamp();
+        com.google.ar.core.Camera camera = frame.getCamera();
+        if (!cornerWorker.getQualityGate().acceptTracking(camera.getTrackingState() == TrackingState.TRACKING)) {
+            return;
+        }
+        Image image = null;
+        try {
+            long t = metrics.now();
+            image = frame.acquireCameraImage();
+            metrics.record(PipelineMetrics.Stage.CAPTURE, t);
+            cornerWorker.submit(image, frame.getTimestamp(), camera.getPose(),
+                    camera.getImageIntrinsics().getFocalLength());
+        } catch (NotYetAvailableException e) {
+            // No camera image for this frame yet, try again on the next one
+        } finally {
+            if (image != null) {
+                image.close();
             }
-            Toast.makeText(getApplicationContext(), String.valueOf(hitResults.size()), Toast.LENGTH_SHORT).show();
         }
     }
 
-    private Bitmap getBitmapFromView(){
-        Bitmap bitmap = null;
+    // Moves one marker per detected corner instead of creating new anchors for every result
+    private void showLiveCorners(ArrayList<Point> corners, long frameTimestamp) {
+        Frame frame = arFragment.getArSceneView().getArFrame();
+        if (frame == null || cubeRenderable == null) {
+            return;
+        }
+        long t = metrics.now();
+        HitResult[] hits = corners != null ? cornerProjector.hitTest(frame, corners) : null;
+        if (hits != null) {
+            t = metrics.record(PipelineMetrics.Stage.HIT_TEST, t);
+        }
+        for (int i = 0; i < liveCornerNodes.length; i++) {
+            if (liveCornerNodes[i] == null) {
+                liveCornerNodes[i] = new Node();
+                liveCornerNodes[i].setRenderable(cubeRenderable);
+            }
+            Node node = liveCornerNodes[i];
+
+            HitResult hit = hits != null && i < hits.length ? hits[i] : null;
+            if (hit == null) {
+                node.setParent(null);
+                continue;
+            }
+            Pose pose = hit.getHitPose();
+            node.setParent(arFragment.getArSceneView().getScene());
+            node.setWorldPosition(new Vector3(pose.tx(), pose.ty(), pose.tz()));
+        }
+        if (hits != null) {
+            metrics.record(PipelineMetrics.Stage.ANCHOR, t);
+        }
+    }
+
+    // The caller owns the returned image and must close it
+    private Image acquireCameraImage(){
+        Image image = null;
         try {
-            Image image = arFragment.getArSceneView().getArFrame().acquireCameraImage();
-            byte[] bytes = UtilsBitmap.imageToByte(image);
-            bitmap = BitmapFactory.decodeByteArray(bytes,0,bytes.length,null);
-            bitmap = UtilsBitmap.rotateBitmap(bitmap, 90);
+            image = arFragment.getArSceneView().getArFrame().acquireCameraImage();
         } catch (NotYetAvailableException e) {
             e.printStackTrace();
         }
+        return image;
+    }
+
+    private Bitmap getBitmapFromImage(Image image){
+        if (yuvConverter == null) {
+            yuvConverter = new YuvConverter();
+        }
+        long t = metrics.now();
+        Mat rgba = UtilsBitmap.imageToRgba(image, yuvConverter);
+        t = metrics.record(PipelineMetrics.Stage.YUV, t);
+        Mat rotated = yuvConverter.rotate(rgba, Core.ROTATE_90_CLOCKWISE);
+        metrics.record(PipelineMetrics.Stage.ROTATE, t);
+        Bitmap bitmap = Bitmap.createBitmap(rotated.cols(), rotated.rows(), Bitmap.Config.ARGB_8888);
+        Utils.matToBitmap(rotated, bitmap);
         return bitmap;
     }
 
@@ -764,22 +967,44 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
                 node.setParent(null);
             }
         }
-        arrayList1.clear();
-        arrayList2.clear();
+        measurementOverlay.clear();
+        measurement.clear();
         lastAnchorNode = null;
         point1 = null;
         point2 = null;
         txtDistance.setText("");
     }
 
-    private float getDistanceMeters(ArrayList<Float> arayList1, ArrayList<Float> arrayList2) {
+    // Length of the last segment, plus the whole polyline once there is more than one
+    private String distanceText(float segment) {
+        if (measurement.getSegmentCount() < 2) {
+            return "Distance: " + String.valueOf(segment);
+        }
+        return "Distance: " + String.valueOf(segment) + " (total " + String.valueOf(measurement.getTotalLength()) + ")";
+    }
+
+    // Debug overlay, refreshed a few times a second while it is shown
+    private void refreshMetrics() {
+        if (txtMetrics.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (now - lastMetricsRefresh < METRICS_REFRESH_MS) {
+            return;
+        }
+        lastMetricsRefresh = now;
+        String summary = metrics.summary();
+        txtMetrics.setText(summary.isEmpty() ? "No samples yet" : summary);
+    }
 
-        float distanceX = arayList1.get(0) - arrayList2.get(0);
-        float distanceY = arayList1.get(1) - arrayList2.get(1);
-        float distanceZ = arayList1.get(2) - arrayList2.get(2);
-        return (float) Math.sqrt(distanceX * distanceX +
-                distanceY * distanceY +
-                distanceZ * distanceZ);
+    // Low end devices run the corner detection on a half resolution image
+    private CornerDetectOptions createDetectOptions() {
+        ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowEnd = activityManager != null && activityManager.isLowRamDevice();
+        // The live detection splits every frame over the cores, at most the usual 4 big ones
+        int strips = Math.min(4, Runtime.getRuntime().availableProcessors());
+        return CornerDetectOptions.defaults().setPyramidLevels(lowEnd ? 1 : 0).setStrips(strips)
+                .setTracking(CornerTracking.Mode.OPTICAL_FLOW).setMetrics(metrics);
     }
 
     @SuppressLint("ObsoleteSdkInt")
@@ -825,56 +1050,18 @@ public class HelloSceneformActivity extends AppCompatActivity implements Node.On
     @Override
     public void onUpdate(FrameTime frameTime) {
         Frame frame = arFragment.getArSceneView().getArFrame();
+        if (frame == null) {
+            return;
+        }
+        cornerProjector.onFrame(frame);
+        if (liveDetectionEnabled) {
+            submitLiveFrame(frame);
+        }
+        refreshMetrics();
 //        Collection<Anchor> updatedAnchors = frame.getUpdatedAnchors();
 //        for (Anchor anchor : updatedAnchors) {
 //            Handle updated anchors...
 //        }
     }
 
-    private void saveBmp2Gallery(Bitmap bmp, String picName) {
-
-        String fileName = null;
-        //System album catalog
-        String galleryPath= Environment.getExternalStorageDirectory()
-                + File.separator + Environment.DIRECTORY_DCIM
-                +File.separator+"Camera"+File.separator;
-
-
-        // Declare file objects
-        File file = null;
-        // Declare output stream
-        FileOutputStream outStream = null;
-
-        try {
-            // If there is a Target file, get the file object directly, otherwise create a file with filename as the name
-            file = new File(galleryPath, picName+ ".jpg");
-
-            // Get file relative path
-            fileName = file.toString();
-            // Get the output stream, if there is content in the file, append the content
-            outStream = new FileOutputStream(fileName);
-            if (null != outStream) {
-                bmp.compress(Bitmap.CompressFormat.PNG, 90, outStream);
-            }
-
-        } catch (Exception e) {
-            e.getStackTrace();
-        }finally {
-            try {
-                if (outStream != null) {
-                    outStream.close();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        MediaStore.Images.Media.insertImage(getContentResolver(), bmp, fileName, null);
-        Intent intent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-        Uri uri = Uri.fromFile(file);
-        intent.setData(uri);
-        sendBroadcast(intent);
-
-        Toast.makeText(this, "Finish saving！", Toast.LENGTH_SHORT).show();
-    }
-
 }
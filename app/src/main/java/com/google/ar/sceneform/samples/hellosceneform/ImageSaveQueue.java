@@ -0,0 +1,198 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaScannerConnection;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Saves Bitmaps to the gallery on a background thread, so a capture no longer waits for
+// the encoder and the disk. Every image is encoded once, straight into its file, and then
+// handed to the media scanner (MediaStore.insertImage() would encode it a second time).
+// The backlog is bounded: a new image with the name of one still waiting replaces it
+// (the file would be overwritten anyway), otherwise a full queue drops by its Overflow policy.
+// The queue owns the Bitmaps it is given and recycles them once saved or dropped.
+public class ImageSaveQueue {
+
+    private static final String TAG = "ImageSaveQueue";
+
+    public enum Codec {
+        JPEG(Bitmap.CompressFormat.JPEG, ".jpg", "image/jpeg"),
+        WEBP(Bitmap.CompressFormat.WEBP, ".webp", "image/webp"),
+        PNG(Bitmap.CompressFormat.PNG, ".png", "image/png");
+
+        final Bitmap.CompressFormat format;
+        final String extension;
+        final String mimeType;
+
+        Codec(Bitmap.CompressFormat format, String extension, String mimeType) {
+            this.format = format;
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+    }
+
+    // What happens to a new image when the backlog is full
+    public enum Overflow { DROP_OLDEST, DROP_NEWEST }
+
+    public interface Listener {
+        // Called on the main thread
+        void onImageSaved(File file);
+    }
+
+    private static class Job {
+        final Bitmap bitmap;
+        final String name;
+
+        Job(Bitmap bitmap, String name) {
+            this.bitmap = bitmap;
+            this.name = name;
+        }
+    }
+
+    private final Context mContext;
+    private final File mDir;
+    private final int mCapacity;
+    private final Codec mCodec;
+    private final int mQuality;
+    private final Overflow mOverflow;
+    private final Listener mListener;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ImageSave");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Guarded by itself
+    private final ArrayDeque<Job> mBacklog = new ArrayDeque<>();
+    private boolean mDraining;
+    private int mDropped;
+    private int mMerged;
+
+    // quality is the Bitmap.compress() quality, PNG ignores it
+    public ImageSaveQueue(Context context, File dir, int capacity, Codec codec, int quality,
+                          Overflow overflow, Listener listener) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        mContext = context.getApplicationContext();
+        mDir = dir;
+        mCapacity = capacity;
+        mCodec = codec;
+        mQuality = quality;
+        mOverflow = overflow;
+        mListener = listener;
+    }
+
+    // Queues bitmap to be saved as name plus the codec's extension. Returns at once.
+    public void save(Bitmap bitmap, String name) {
+        Bitmap dropped = null;
+        boolean startDrain = false;
+        synchronized (mBacklog) {
+            Job same = find(name);
+            if (same != null) {
+                mBacklog.remove(same);
+                dropped = same.bitmap;
+                mMerged++;
+            } else if (mBacklog.size() == mCapacity) {
+                mDropped++;
+                if (mOverflow == Overflow.DROP_NEWEST) {
+                    bitmap.recycle();
+                    return;
+                }
+                dropped = mBacklog.pollFirst().bitmap;
+            }
+            mBacklog.addLast(new Job(bitmap, name));
+            if (!mDraining) {
+                mDraining = true;
+                startDrain = true;
+            }
+        }
+        if (dropped != null) {
+            dropped.recycle();
+        }
+        if (startDrain) {
+            mExecutor.execute(mDrain);
+        }
+    }
+
+    // Images dropped because the backlog was full
+    public int getDropped() {
+        synchronized (mBacklog) {
+            return mDropped;
+        }
+    }
+
+    // Images replaced by a newer one with the same name before they were saved
+    public int getMerged() {
+        synchronized (mBacklog) {
+            return mMerged;
+        }
+    }
+
+    // Saves what is queued and stops the thread afterwards
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    private Job find(String name) {
+        for (Job job : mBacklog) {
+            if (job.name.equals(name)) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                Job job;
+                synchronized (mBacklog) {
+                    job = mBacklog.pollFirst();
+                    if (job == null) {
+                        mDraining = false;
+                        return;
+                    }
+                }
+                write(job);
+            }
+        }
+    };
+
+    private void write(Job job) {
+        File file = new File(mDir, job.name + mCodec.extension);
+        try {
+            if (!mDir.isDirectory() && !mDir.mkdirs()) {
+                throw new IOException("Can not create " + mDir);
+            }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+                if (!job.bitmap.compress(mCodec.format, mQuality, out)) {
+                    throw new IOException("Can not encode " + file);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Saving " + file + " failed", e);
+            return;
+        } finally {
+            job.bitmap.recycle();
+        }
+        // Adds the file to the gallery without decoding or encoding it again
+        MediaScannerConnection.scanFile(mContext, new String[]{file.getPath()},
+                new String[]{mCodec.mimeType}, null);
+        if (mListener != null) {
+            mMainHandler.post(() -> mListener.onImageSaved(file));
+        }
+    }
+}
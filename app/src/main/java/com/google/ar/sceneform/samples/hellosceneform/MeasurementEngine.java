@@ -0,0 +1,141 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import java.util.Arrays;
+
+// Measured points of a polyline in world coordinates (meters) with everything derived from
+// them kept up to date on every point, each in O(1): segment lengths, total length, the
+// bounding box and the enclosed area. Points live in growable float[] buffers, nothing is
+// boxed.
+//
+// The area is the one of the polygon closed from the last point back to the first. It is
+// the length of the polygon's vector area, 1/2 sum(q_i x q_i+1) with q_i = p_i - p_0: the
+// shoelace formula on the plane that fits the points best, which for points on one plane
+// (a floor) is that plane. Taking the points relative to p_0 makes the closing term vanish
+// and keeps the sums precise far from the world origin.
+// Android-free; one thread at a time.
+public class MeasurementEngine {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // x, y, z per point
+    private float[] mPoints = new float[3 * INITIAL_CAPACITY];
+    // Length of the segment ending at point i, 0 for the first point
+    private float[] mSegments = new float[INITIAL_CAPACITY];
+    private int mCount;
+
+    private double mTotalLength;
+    // Twice the vector area of the points so far
+    private double mAreaX;
+    private double mAreaY;
+    private double mAreaZ;
+    private final float[] mMin = new float[3];
+    private final float[] mMax = new float[3];
+
+    // Adds a point, returns the length of the segment it ends (0 for the first point)
+    public float addPoint(float x, float y, float z) {
+        if (3 * mCount == mPoints.length) {
+            mPoints = Arrays.copyOf(mPoints, 2 * mPoints.length);
+            mSegments = Arrays.copyOf(mSegments, 2 * mSegments.length);
+        }
+        int i = 3 * mCount;
+        mPoints[i] = x;
+        mPoints[i + 1] = y;
+        mPoints[i + 2] = z;
+
+        float length = 0;
+        if (mCount == 0) {
+            mMin[0] = mMax[0] = x;
+            mMin[1] = mMax[1] = y;
+            mMin[2] = mMax[2] = z;
+        } else {
+            float dx = x - mPoints[i - 3];
+            float dy = y - mPoints[i - 2];
+            float dz = z - mPoints[i - 1];
+            length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            mTotalLength += length;
+
+            mMin[0] = Math.min(mMin[0], x);
+            mMin[1] = Math.min(mMin[1], y);
+            mMin[2] = Math.min(mMin[2], z);
+            mMax[0] = Math.max(mMax[0], x);
+            mMax[1] = Math.max(mMax[1], y);
+            mMax[2] = Math.max(mMax[2], z);
+
+            if (mCount >= 2) {
+                // q_previous x q_new, both relative to the first point
+                double ax = mPoints[i - 3] - mPoints[0];
+                double ay = mPoints[i - 2] - mPoints[1];
+                double az = mPoints[i - 1] - mPoints[2];
+                double bx = x - mPoints[0];
+                double by = y - mPoints[1];
+                double bz = z - mPoints[2];
+                mAreaX += ay * bz - az * by;
+                mAreaY += az * bx - ax * bz;
+                mAreaZ += ax * by - ay * bx;
+            }
+        }
+        mSegments[mCount] = length;
+        mCount++;
+        return length;
+    }
+
+    public void clear() {
+        mCount = 0;
+        mTotalLength = 0;
+        mAreaX = 0;
+        mAreaY = 0;
+        mAreaZ = 0;
+    }
+
+    public int getPointCount() {
+        return mCount;
+    }
+
+    public int getSegmentCount() {
+        return Math.max(0, mCount - 1);
+    }
+
+    // Length of segment i, from point i to point i + 1
+    public float getSegmentLength(int i) {
+        if (i < 0 || i >= getSegmentCount()) {
+            throw new IllegalArgumentException("No segment " + i + " in " + getSegmentCount());
+        }
+        return mSegments[i + 1];
+    }
+
+    public float getLastSegmentLength() {
+        return mCount < 2 ? 0 : mSegments[mCount - 1];
+    }
+
+    public float getTotalLength() {
+        return (float) mTotalLength;
+    }
+
+    // Area of the polygon closed from the last point back to the first, 0 below three points
+    public float getArea() {
+        return (float) (0.5 * Math.sqrt(mAreaX * mAreaX + mAreaY * mAreaY + mAreaZ * mAreaZ));
+    }
+
+    // Size of the bounding box along x, y and z
+    public void getExtents(float[] extents) {
+        for (int axis = 0; axis < 3; axis++) {
+            extents[axis] = mCount == 0 ? 0 : mMax[axis] - mMin[axis];
+        }
+    }
+
+    public void getMin(float[] min) {
+        System.arraycopy(mMin, 0, min, 0, 3);
+    }
+
+    public void getMax(float[] max) {
+        System.arraycopy(mMax, 0, max, 0, 3);
+    }
+
+    // Coordinate axis (0 x, 1 y, 2 z) of point i
+    public float getPoint(int i, int axis) {
+        if (i < 0 || i >= mCount) {
+            throw new IllegalArgumentException("No point " + i + " in " + mCount);
+        }
+        return mPoints[3 * i + axis];
+    }
+}
@@ -0,0 +1,269 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Append-only log of the measurements, one fixed-size binary record per measured segment.
+// Records go into memory-mapped segment files (measurements-00000.journal, ...) in one
+// directory, appending is a handful of puts into the mapping and never waits for the disk.
+// A background writer forces the appended records to the file and then moves the committed
+// record count in the segment header; all records appended while it waits share one
+// force (group commit). Readers only trust records up to the committed count, so a crash
+// loses at most the last COMMIT_DELAY_MS of measurements and never leaves a torn record.
+// Sessions append to the last segment instead of overwriting it.
+//
+// Segment layout, little endian:
+//   header  int magic, int version, int record size, int committed records
+//   record  long time (ms since epoch), int mode, 7 floats from pose (tx ty tz qx qy qz qw),
+//           7 floats to pose, float distance (m)
+public class MeasurementJournal implements Closeable {
+
+    // Mode of the app a record was taken in
+    public static final int MODE_LIST = 3;
+
+    public interface Visitor {
+        // from and to are reused between records, copy them to keep them
+        void onRecord(long timeMillis, int mode, float[] from, float[] to, float distance);
+    }
+
+    static final int MAGIC = 0x464d4a31; // "FMJ1"
+    static final int VERSION = 1;
+    static final int POSE_FLOATS = 7;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 8 + 4 + 2 * POSE_FLOATS * 4 + 4;
+    static final int SEGMENT_RECORDS = 16384;
+    private static final int COMMITTED_OFFSET = 12;
+    private static final long SEGMENT_BYTES = HEADER_BYTES + (long) SEGMENT_RECORDS * RECORD_BYTES;
+    private static final long COMMIT_DELAY_MS = 200;
+
+    private final File mDir;
+    private final ScheduledExecutorService mWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "MeasurementJournal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean mCommitScheduled = new AtomicBoolean();
+    private final Runnable mCommit = this::commit;
+
+    // Current segment, guarded by this
+    private RandomAccessFile mFile;
+    private MappedByteBuffer mSegment;
+    private int mSegmentIndex;
+    private int mRecords;
+    private int mCommitted;
+    private boolean mClosed;
+
+    private MeasurementJournal(File dir) {
+        mDir = dir;
+    }
+
+    // Opens the journal in dir, appending to its last segment
+    public static MeasurementJournal open(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can not create " + dir);
+        }
+        MeasurementJournal journal = new MeasurementJournal(dir);
+        File[] segments = segments(dir);
+        int last = segments.length == 0 ? 0 : segmentIndex(segments[segments.length - 1]);
+        journal.openSegment(last);
+        return journal;
+    }
+
+    // Called on the measuring thread, typically the UI thread
+    public synchronized void append(long timeMillis, int mode, float[] from, float[] to, float distance)
+            throws IOException {
+        if (mClosed) {
+            throw new IOException("Journal is closed");
+        }
+        if (mRecords == SEGMENT_RECORDS) {
+            finishSegment();
+            openSegment(mSegmentIndex + 1);
+        }
+        int offset = HEADER_BYTES + mRecords * RECORD_BYTES;
+        mSegment.putLong(offset, timeMillis);
+        mSegment.putInt(offset + 8, mode);
+        offset += 12;
+        for (int i = 0; i < POSE_FLOATS; i++, offset += 4) {
+            mSegment.putFloat(offset, from[i]);
+        }
+        for (int i = 0; i < POSE_FLOATS; i++, offset += 4) {
+            mSegment.putFloat(offset, to[i]);
+        }
+        mSegment.putFloat(offset, distance);
+        mRecords++;
+
+        if (mCommitScheduled.compareAndSet(false, true)) {
+            mWriter.schedule(mCommit, COMMIT_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Commits what is left and stops the writer
+    @Override
+    public void close() throws IOException {
+        mWriter.shutdown();
+        try {
+            mWriter.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            finishSegment();
+        }
+    }
+
+    // Streams all committed records of the journal in dir, oldest first. Returns the record count.
+    public static int read(File dir, Visitor visitor) throws IOException {
+        float[] from = new float[POSE_FLOATS];
+        float[] to = new float[POSE_FLOATS];
+        int total = 0;
+        for (File file : segments(dir)) {
+            try (RandomAccessFile segmentFile = new RandomAccessFile(file, "r")) {
+                FileChannel channel = segmentFile.getChannel();
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                segment.order(ByteOrder.LITTLE_ENDIAN);
+                checkHeader(segment, file);
+                int committed = segment.getInt(COMMITTED_OFFSET);
+                for (int r = 0; r < committed; r++) {
+                    int offset = HEADER_BYTES + r * RECORD_BYTES;
+                    long time = segment.getLong(offset);
+                    int mode = segment.getInt(offset + 8);
+                    offset += 12;
+                    for (int i = 0; i < POSE_FLOATS; i++, offset += 4) {
+                        from[i] = segment.getFloat(offset);
+                    }
+                    for (int i = 0; i < POSE_FLOATS; i++, offset += 4) {
+                        to[i] = segment.getFloat(offset);
+                    }
+                    visitor.onRecord(time, mode, from, to, segment.getFloat(offset));
+                }
+                total += committed;
+            }
+        }
+        return total;
+    }
+
+    // Writes the journal in dir as CSV, one line per record. Returns the record count.
+    public static int exportCsv(File dir, Appendable out) throws IOException {
+        out.append("time_ms,mode,from_tx,from_ty,from_tz,from_qx,from_qy,from_qz,from_qw,"
+                + "to_tx,to_ty,to_tz,to_qx,to_qy,to_qz,to_qw,distance_m\n");
+        IOException[] failure = new IOException[1];
+        StringBuilder line = new StringBuilder(256);
+        int count = read(dir, (time, mode, from, to, distance) -> {
+            if (failure[0] != null) {
+                return;
+            }
+            line.setLength(0);
+            line.append(time).append(',').append(mode);
+            for (float value : from) {
+                line.append(',').append(value);
+            }
+            for (float value : to) {
+                line.append(',').append(value);
+            }
+            line.append(',').append(distance).append('\n');
+            try {
+                out.append(line);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return count;
+    }
+
+    // Runs on the writer thread
+    private void commit() {
+        mCommitScheduled.set(false);
+        MappedByteBuffer segment;
+        int records;
+        synchronized (this) {
+            if (mClosed || mRecords == mCommitted) {
+                return;
+            }
+            segment = mSegment;
+            records = mRecords;
+        }
+        // The records first, only then the count that makes them visible
+        segment.force();
+        synchronized (this) {
+            if (segment != mSegment || mClosed) {
+                // Rolled over or closed meanwhile, finishSegment() committed it
+                return;
+            }
+            segment.putInt(COMMITTED_OFFSET, records);
+            mCommitted = records;
+        }
+        segment.force();
+    }
+
+    private void openSegment(int index) throws IOException {
+        File file = new File(mDir, String.format(Locale.US, "measurements-%05d.journal", index));
+        boolean exists = file.exists() && file.length() >= HEADER_BYTES;
+        mFile = new RandomAccessFile(file, "rw");
+        mSegment = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+        mSegment.order(ByteOrder.LITTLE_ENDIAN);
+        mSegmentIndex = index;
+        if (exists) {
+            checkHeader(mSegment, file);
+            // Anything after the committed records was never made visible, it is overwritten
+            mRecords = mSegment.getInt(COMMITTED_OFFSET);
+        } else {
+            mSegment.putInt(0, MAGIC);
+            mSegment.putInt(4, VERSION);
+            mSegment.putInt(8, RECORD_BYTES);
+            mSegment.putInt(COMMITTED_OFFSET, 0);
+            mSegment.force();
+            mRecords = 0;
+        }
+        mCommitted = mRecords;
+        if (mRecords == SEGMENT_RECORDS) {
+            finishSegment();
+            openSegment(index + 1);
+        }
+    }
+
+    private void finishSegment() throws IOException {
+        mSegment.force();
+        mSegment.putInt(COMMITTED_OFFSET, mRecords);
+        mSegment.force();
+        mCommitted = mRecords;
+        mFile.close();
+    }
+
+    private static void checkHeader(MappedByteBuffer segment, File file) throws IOException {
+        if (segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION || segment.getInt(8) != RECORD_BYTES) {
+            throw new IOException("Not a measurement journal segment: " + file);
+        }
+    }
+
+    private static File[] segments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("measurements-") && name.endsWith(".journal"));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static int segmentIndex(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring("measurements-".length(), name.length() - ".journal".length()));
+    }
+}
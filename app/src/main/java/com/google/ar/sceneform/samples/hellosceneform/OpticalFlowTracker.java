@@ -0,0 +1,239 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.Video;
+
+import java.util.ArrayList;
+
+// Follows the four corners and up to SUPPORT_POINTS strong features around them with
+// pyramidal Lucas-Kanade from one frame to the next. Every point is tracked forward and back,
+// only points that come back to where they started count. A corner that fails is moved with
+// the similarity transform of the surviving support points. The tracker unlocks, so the full
+// pipeline runs again, once too few points survive.
+// Android-free like CornorDetect; one thread at a time.
+public class OpticalFlowTracker implements CornerTracking {
+
+    private static final int CORNERS = 4;
+    // Extra features from goodFeaturesToTrack, they carry lost corners along
+    static final int SUPPORT_POINTS = 46;
+    // Largest forward-backward error of a point that still counts as tracked, in pixels
+    private static final double MAX_FB_ERROR = 1.0;
+    // Surviving support points needed to move a lost corner
+    private static final int MIN_SUPPORT = 6;
+    // Relock once fewer than this share of the locked points survive
+    private static final double MIN_SURVIVING = 0.5;
+
+    private static final Size WINDOW = new Size(21, 21);
+    private static final int MAX_LEVEL = 3;
+    private static final TermCriteria CRITERIA =
+            new TermCriteria(TermCriteria.EPS + TermCriteria.COUNT, 20, 0.03);
+    private static final Scalar ALL = new Scalar(255);
+    private static final Scalar NONE = new Scalar(0);
+
+    private final Mat mPrevious = new Mat();
+    private final MatOfPoint2f mPrevPoints = new MatOfPoint2f();
+    private final MatOfPoint2f mNextPoints = new MatOfPoint2f();
+    private final MatOfPoint2f mBackPoints = new MatOfPoint2f();
+    private final MatOfByte mStatus = new MatOfByte();
+    private final MatOfByte mBackStatus = new MatOfByte();
+    private final MatOfFloat mError = new MatOfFloat();
+    private final MatOfPoint mFeatures = new MatOfPoint();
+    private final Mat mFeatureMask = new Mat();
+
+    // Java side copies: x/y pairs of the points, corners first
+    private float[] mPrev = new float[0];
+    private float[] mNext = new float[0];
+    private float[] mBack = new float[0];
+    private byte[] mOk = new byte[0];
+    private byte[] mBackOk = new byte[0];
+
+    private boolean mLocked;
+    private int mLockedPoints;
+
+    @Override
+    public boolean isLocked() {
+        return mLocked;
+    }
+
+    @Override
+    public void lock(Mat gray, ArrayList<Point> corners) {
+        gray.copyTo(mPrevious);
+
+        // Support features anywhere but right on the corners, which are tracked anyway
+        mFeatureMask.create(gray.size(), CvType.CV_8UC1);
+        mFeatureMask.setTo(ALL);
+        for (Point corner : corners) {
+            Imgproc.circle(mFeatureMask, corner, 10, NONE, -1);
+        }
+        Imgproc.goodFeaturesToTrack(gray, mFeatures, SUPPORT_POINTS, 0.01, 10, mFeatureMask, 3, false, 0.04);
+
+        int support = mFeatures.rows();
+        int count = CORNERS + support;
+        ensurePoints(count);
+        for (int k = 0; k < CORNERS; k++) {
+            mPrev[2 * k] = (float) corners.get(k).x;
+            mPrev[2 * k + 1] = (float) corners.get(k).y;
+        }
+        if (support > 0) {
+            int[] features = new int[2 * support];
+            mFeatures.get(0, 0, features);
+            for (int k = 0; k < 2 * support; k++) {
+                mPrev[2 * CORNERS + k] = features[k];
+            }
+        }
+        setPoints(mPrevPoints, mPrev, count);
+        mLockedPoints = count;
+        mLocked = true;
+    }
+
+    @Override
+    public ArrayList<Point> track(Mat gray, double dx, double dy) {
+        if (!mLocked) {
+            return null;
+        }
+        int count = mPrevPoints.rows();
+
+        // The camera rotation is the starting guess for every point
+        for (int k = 0; k < count; k++) {
+            mNext[2 * k] = mPrev[2 * k] + (float) dx;
+            mNext[2 * k + 1] = mPrev[2 * k + 1] + (float) dy;
+        }
+        setPoints(mNextPoints, mNext, count);
+        Video.calcOpticalFlowPyrLK(mPrevious, gray, mPrevPoints, mNextPoints, mStatus, mError,
+                WINDOW, MAX_LEVEL, CRITERIA, Video.OPTFLOW_USE_INITIAL_FLOW, 1e-4);
+        Video.calcOpticalFlowPyrLK(gray, mPrevious, mNextPoints, mBackPoints, mBackStatus, mError,
+                WINDOW, MAX_LEVEL, CRITERIA, 0, 1e-4);
+        mNextPoints.get(0, 0, mNext);
+        mBackPoints.get(0, 0, mBack);
+        mStatus.get(0, 0, mOk);
+        mBackStatus.get(0, 0, mBackOk);
+
+        int surviving = 0;
+        int corners = 0;
+        for (int k = 0; k < count; k++) {
+            boolean tracked = mOk[k] != 0 && mBackOk[k] != 0
+                    && Math.hypot(mBack[2 * k] - mPrev[2 * k], mBack[2 * k + 1] - mPrev[2 * k + 1]) < MAX_FB_ERROR;
+            mOk[k] = (byte) (tracked ? 1 : 0);
+            if (tracked) {
+                surviving++;
+                if (k < CORNERS) {
+                    corners++;
+                }
+            }
+        }
+        if (surviving < mLockedPoints * MIN_SURVIVING || (corners < CORNERS && !moveLostCorners(count))) {
+            mLocked = false;
+            return null;
+        }
+
+        // The next frame starts from the corners and the surviving support points
+        int kept = CORNERS;
+        for (int k = CORNERS; k < count; k++) {
+            if (mOk[k] != 0) {
+                mNext[2 * kept] = mNext[2 * k];
+                mNext[2 * kept + 1] = mNext[2 * k + 1];
+                kept++;
+            }
+        }
+        float[] swap = mPrev;
+        mPrev = mNext;
+        mNext = swap;
+        setPoints(mPrevPoints, mPrev, kept);
+        gray.copyTo(mPrevious);
+
+        ArrayList<Point> result = new ArrayList<>(CORNERS);
+        for (int k = 0; k < CORNERS; k++) {
+            result.add(new Point(mPrev[2 * k], mPrev[2 * k + 1]));
+        }
+        return result;
+    }
+
+    @Override
+    public void release() {
+        mPrevious.release();
+        mPrevPoints.release();
+        mNextPoints.release();
+        mBackPoints.release();
+        mStatus.release();
+        mBackStatus.release();
+        mError.release();
+        mFeatures.release();
+        mFeatureMask.release();
+    }
+
+    // Moves the corners that failed with the motion of the surviving support points.
+    // Returns false when there are not enough of them.
+    private boolean moveLostCorners(int count) {
+        int support = 0;
+        for (int k = CORNERS; k < count; k++) {
+            if (mOk[k] != 0) {
+                support++;
+            }
+        }
+        if (support < MIN_SUPPORT) {
+            return false;
+        }
+        float[] from = new float[2 * support];
+        float[] to = new float[2 * support];
+        int i = 0;
+        for (int k = CORNERS; k < count; k++) {
+            if (mOk[k] != 0) {
+                from[2 * i] = mPrev[2 * k];
+                from[2 * i + 1] = mPrev[2 * k + 1];
+                to[2 * i] = mNext[2 * k];
+                to[2 * i + 1] = mNext[2 * k + 1];
+                i++;
+            }
+        }
+        MatOfPoint2f fromPoints = new MatOfPoint2f();
+        MatOfPoint2f toPoints = new MatOfPoint2f();
+        setPoints(fromPoints, from, support);
+        setPoints(toPoints, to, support);
+        // Rotation, uniform scale and translation, RANSAC drops points on the moving foot
+        Mat transform = Calib3d.estimateAffinePartial2D(fromPoints, toPoints);
+        fromPoints.release();
+        toPoints.release();
+        if (transform.empty()) {
+            return false;
+        }
+        double[] m = new double[6];
+        transform.get(0, 0, m);
+        transform.release();
+
+        for (int k = 0; k < CORNERS; k++) {
+            if (mOk[k] == 0) {
+                float x = mPrev[2 * k];
+                float y = mPrev[2 * k + 1];
+                mNext[2 * k] = (float) (m[0] * x + m[1] * y + m[2]);
+                mNext[2 * k + 1] = (float) (m[3] * x + m[4] * y + m[5]);
+            }
+        }
+        return true;
+    }
+
+    private void ensurePoints(int count) {
+        if (mOk.length < count) {
+            mPrev = new float[2 * count];
+            mNext = new float[2 * count];
+            mBack = new float[2 * count];
+            mOk = new byte[count];
+            mBackOk = new byte[count];
+        }
+    }
+
+    private static void setPoints(MatOfPoint2f points, float[] xy, int count) {
+        points.create(count, 1, CvType.CV_32FC2);
+        points.put(0, 0, xy);
+    }
+}
@@ -0,0 +1,280 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latency histograms of the vision pipeline, one per stage, timed with Core.getTickCount().
+// Stages are timed by chaining: t = metrics.now(); ... t = metrics.record(Stage.CANNY, t);
+// Recording is a few atomic adds into preallocated arrays, it never allocates and can be
+// done from any thread (the strips of TiledCornerDetector record in parallel).
+//
+// The histograms are log-linear in microseconds: every power of two is split into
+// SUB_BUCKETS buckets, so a percentile is off by at most 1 / SUB_BUCKETS of its value.
+//
+// A new instance does not record anything until it is enabled, now() needs the OpenCV
+// natives. Android-free like CornorDetect.
+public class PipelineMetrics {
+
+    public enum Stage {
+        // Camera image out of ARCore
+        CAPTURE,
+        // YUV_420_888 to RGBA of the color path
+        YUV,
+        // Upright gray (live and photo) or color image
+        ROTATE,
+        QUALITY_GATE,
+        PYRAMID,
+        PREFILTER,
+        CANNY,
+        HARRIS,
+        EXTRACT,
+        // getPoint(), picking the four corners out of the candidates
+        CLUSTER,
+        // cornerSubPix after a pyramid detection
+        REFINE,
+        // A tracked frame, instead of the stages from PYRAMID to REFINE
+        TRACK,
+        // Corners to world
+        HIT_TEST,
+        // Anchors and markers at the hits
+        ANCHOR
+    }
+
+    // Used where no metrics are wanted, never enabled
+    public static final PipelineMetrics NONE = new PipelineMetrics();
+
+    private static final int SUB_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Up to 2^30 us, about 18 minutes, longer samples go to the last bucket
+    private static final int MAX_EXPONENT = 30;
+    static final int BUCKETS = SUB_BUCKETS * (MAX_EXPONENT - SUB_BITS + 1);
+    private static final int STAGES = Stage.values().length;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(STAGES * BUCKETS);
+    private final AtomicLongArray mCounts = new AtomicLongArray(STAGES);
+    private final AtomicLongArray mSums = new AtomicLongArray(STAGES);
+    private final AtomicLongArray mMax = new AtomicLongArray(STAGES);
+
+    private volatile boolean mEnabled;
+    // Taken from OpenCV when enabled
+    private volatile double mTicksPerMicro;
+
+    // Call once the OpenCV natives are loaded
+    public void setEnabled(boolean enabled) {
+        if (this == NONE) {
+            throw new IllegalStateException("PipelineMetrics.NONE can not be enabled");
+        }
+        if (enabled && mTicksPerMicro == 0) {
+            mTicksPerMicro = Core.getTickFrequency() / 1e6;
+        }
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    // Start of a stage, 0 while disabled
+    public long now() {
+        return mEnabled ? Core.getTickCount() : 0;
+    }
+
+    // Records the time since start for stage and returns now(), the start of the next stage
+    public long record(Stage stage, long start) {
+        if (!mEnabled) {
+            return 0;
+        }
+        long end = Core.getTickCount();
+        recordMicros(stage, (long) ((end - start) / mTicksPerMicro));
+        return end;
+    }
+
+    public void recordMicros(Stage stage, long micros) {
+        int s = stage.ordinal();
+        long value = Math.max(0, micros);
+        mBuckets.incrementAndGet(s * BUCKETS + bucket(value));
+        mCounts.incrementAndGet(s);
+        mSums.addAndGet(s, value);
+        long max = mMax.get(s);
+        while (value > max && !mMax.compareAndSet(s, max, value)) {
+            max = mMax.get(s);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < mBuckets.length(); i++) {
+            mBuckets.set(i, 0);
+        }
+        for (int s = 0; s < STAGES; s++) {
+            mCounts.set(s, 0);
+            mSums.set(s, 0);
+            mMax.set(s, 0);
+        }
+    }
+
+    public long getCount(Stage stage) {
+        return mCounts.get(stage.ordinal());
+    }
+
+    public double getMeanMicros(Stage stage) {
+        long count = getCount(stage);
+        return count == 0 ? 0 : (double) mSums.get(stage.ordinal()) / count;
+    }
+
+    public long getMaxMicros(Stage stage) {
+        return mMax.get(stage.ordinal());
+    }
+
+    // Middle of the bucket holding the given fraction (0..1) of the samples, 0 without samples.
+    // Counts recorded concurrently may be missing, which only matters while they are recorded.
+    public long getPercentileMicros(Stage stage, double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Fraction must be in [0, 1]: " + fraction);
+        }
+        int s = stage.ordinal();
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            total += mBuckets.get(s * BUCKETS + b);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += mBuckets.get(s * BUCKETS + b);
+            if (seen >= rank) {
+                return Math.min((lowerBound(b) + lowerBound(b + 1) - 1) / 2, getMaxMicros(stage));
+            }
+        }
+        return getMaxMicros(stage);
+    }
+
+    // One line per stage with samples, for the debug overlay
+    public String summary() {
+        StringBuilder text = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (getCount(stage) == 0) {
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(String.format(Locale.US, "%-12s p50 %5.1f  p95 %5.1f ms",
+                    name(stage), getPercentileMicros(stage, 0.5) / 1000.0,
+                    getPercentileMicros(stage, 0.95) / 1000.0));
+        }
+        return text.toString();
+    }
+
+    // Table of all stages with samples, times in microseconds
+    public String toText(String device) {
+        StringBuilder text = new StringBuilder();
+        text.append("device ").append(device).append('\n');
+        text.append(String.format(Locale.US, "%-12s %8s %8s %8s %8s %8s %8s%n",
+                "stage", "count", "mean", "p50", "p95", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            if (getCount(stage) == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.US, "%-12s %8d %8.0f %8d %8d %8d %8d%n",
+                    name(stage), getCount(stage), getMeanMicros(stage),
+                    getPercentileMicros(stage, 0.5), getPercentileMicros(stage, 0.95),
+                    getPercentileMicros(stage, 0.99), getMaxMicros(stage)));
+        }
+        return text.toString();
+    }
+
+    // Same as toText(), plus the non-empty buckets as [lower bound us, count] pairs
+    public String toJson(String device) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"device\":\"").append(device.replace("\\", "\\\\").replace("\"", "\\\""))
+                .append("\",\"unit\":\"us\",\"stages\":{");
+        boolean first = true;
+        for (Stage stage : Stage.values()) {
+            if (getCount(stage) == 0) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append(String.format(Locale.US,
+                    "\"%s\":{\"count\":%d,\"mean\":%.1f,\"p50\":%d,\"p95\":%d,\"p99\":%d,\"max\":%d,\"buckets\":[",
+                    name(stage), getCount(stage), getMeanMicros(stage),
+                    getPercentileMicros(stage, 0.5), getPercentileMicros(stage, 0.95),
+                    getPercentileMicros(stage, 0.99), getMaxMicros(stage)));
+            boolean firstBucket = true;
+            int s = stage.ordinal();
+            for (int b = 0; b < BUCKETS; b++) {
+                long count = mBuckets.get(s * BUCKETS + b);
+                if (count == 0) {
+                    continue;
+                }
+                if (!firstBucket) {
+                    json.append(',');
+                }
+                firstBucket = false;
+                json.append('[').append(lowerBound(b)).append(',').append(count).append(']');
+            }
+            json.append("]}");
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    // Writes pipeline-metrics.txt and pipeline-metrics.json into dir, returns the text file
+    public File dump(File dir, String device) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can not create " + dir);
+        }
+        File text = new File(dir, "pipeline-metrics.txt");
+        write(text, toText(device));
+        write(new File(dir, "pipeline-metrics.json"), toJson(device));
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return toText("-");
+    }
+
+    // Values below SUB_BUCKETS have a bucket each, above that every power of two has SUB_BUCKETS
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (exponent - SUB_BITS + 1) + sub;
+    }
+
+    // Smallest value of bucket b
+    static long lowerBound(int b) {
+        if (b < SUB_BUCKETS) {
+            return b;
+        }
+        int exponent = b / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = b % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+
+    private static String name(Stage stage) {
+        return stage.name().toLowerCase(Locale.US);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.Vertex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+// All measured segments of a session as one mesh on one node, so the scene graph and the
+// draw calls stay the same however many points are measured. Sceneform meshes are triangle
+// lists, so a segment is a thin square bar of four quads. The mesh is built for a capacity
+// that doubles when it runs out; unused segments are degenerate triangles, which keeps the
+// buffer sizes, and the reallocations of the GPU buffers, to a logarithmic number.
+// The mesh hangs under the first anchor of the session and its vertices are in that anchor's
+// frame, so the path moves with the anchored points when ARCore corrects its map.
+// addPoint() takes world coordinates. UI thread only.
+public class PolylineOverlay {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int VERTICES_PER_SEGMENT = 16;
+    private static final int INDICES_PER_SEGMENT = 24;
+
+    private final float mHalfThickness;
+    private final CompletableFuture<Material> mMaterial;
+    private final Node mNode = new Node();
+    // Anchor the mesh is attached to, null until the first point of a session
+    private AnchorNode mAnchor;
+    // Stands in for all vertices of unused segments
+    private final Vertex mUnused = vertex(Vector3.zero(), Vector3.up());
+
+    private final ArrayList<Vertex> mVertices = new ArrayList<>();
+    private final ArrayList<Integer> mIndices = new ArrayList<>();
+    private int mSegments;
+    private int mCapacity;
+    // End of the current strip, null when the next point starts a new one
+    private Vector3 mLast;
+
+    private ModelRenderable mRenderable;
+    private boolean mBuilding;
+    private boolean mDirty;
+
+    public PolylineOverlay(float thickness, CompletableFuture<Material> material) {
+        mHalfThickness = thickness / 2;
+        mMaterial = material;
+        grow(INITIAL_CAPACITY);
+    }
+
+    // Attaches the mesh to anchor. Set once per session, before the first point.
+    public void setAnchor(AnchorNode anchor) {
+        if (anchor == null || anchor.getAnchor() == null)
+            throw new IllegalArgumentException("Overlay anchor must be anchored");
+        if (mAnchor != null)
+            throw new IllegalStateException("Overlay is already anchored, clear() it first");
+        mAnchor = anchor;
+        mNode.setParent(anchor);
+    }
+
+    public AnchorNode getAnchor() {
+        return mAnchor;
+    }
+
+    // Continues the current strip to point, or starts one there
+    public void addPoint(Vector3 point) {
+        if (mAnchor == null)
+            throw new IllegalStateException("Overlay has no anchor, call setAnchor() first");
+        Vector3 local = toAnchor(point);
+        if (mLast != null) {
+            addSegment(mLast, local);
+        }
+        mLast = local;
+    }
+
+    // The next point starts a new strip
+    public void breakStrip() {
+        mLast = null;
+    }
+
+    // Detaches the mesh from the session's anchor, the buffers are kept for the next one
+    public void clear() {
+        mSegments = 0;
+        mLast = null;
+        mNode.setParent(null);
+        mAnchor = null;
+        Collections.fill(mVertices, mUnused);
+        Collections.fill(mIndices, 0);
+        update();
+    }
+
+    public int getSegmentCount() {
+        return mSegments;
+    }
+
+    // World point in the frame of the anchor, at the anchor's current pose
+    private Vector3 toAnchor(Vector3 point) {
+        Pose inverse = mAnchor.getAnchor().getPose().inverse();
+        float[] local = inverse.transformPoint(new float[]{point.x, point.y, point.z});
+        return new Vector3(local[0], local[1], local[2]);
+    }
+
+    private void addSegment(Vector3 from, Vector3 to) {
+        Vector3 direction = Vector3.subtract(to, from);
+        if (direction.length() == 0) {
+            return;
+        }
+        direction = direction.normalized();
+        if (mSegments == mCapacity) {
+            grow(2 * mCapacity);
+        }
+
+        // Two sides across the segment, then the four corners of its square cross section
+        Vector3 reference = Math.abs(Vector3.dot(direction, Vector3.up())) > 0.99f
+                ? new Vector3(1, 0, 0) : Vector3.up();
+        Vector3 side1 = Vector3.cross(direction, reference).normalized().scaled(mHalfThickness);
+        Vector3 side2 = Vector3.cross(direction, side1).normalized().scaled(mHalfThickness);
+        Vector3[] corners = {
+                Vector3.add(side1, side2),
+                Vector3.subtract(side2, side1),
+                Vector3.add(side1, side2).negated(),
+                Vector3.subtract(side1, side2)};
+
+        int base = mSegments * VERTICES_PER_SEGMENT;
+        int index = mSegments * INDICES_PER_SEGMENT;
+        for (int face = 0; face < 4; face++) {
+            Vector3 a = corners[face];
+            Vector3 b = corners[(face + 1) % 4];
+            Vector3 normal = Vector3.add(a, b).normalized();
+            int v = base + 4 * face;
+            mVertices.set(v, vertex(Vector3.add(from, a), normal));
+            mVertices.set(v + 1, vertex(Vector3.add(from, b), normal));
+            mVertices.set(v + 2, vertex(Vector3.add(to, b), normal));
+            mVertices.set(v + 3, vertex(Vector3.add(to, a), normal));
+            // Counter-clockwise seen from outside
+            mIndices.set(index++, v);
+            mIndices.set(index++, v + 1);
+            mIndices.set(index++, v + 2);
+            mIndices.set(index++, v);
+            mIndices.set(index++, v + 2);
+            mIndices.set(index++, v + 3);
+        }
+        mSegments++;
+        update();
+    }
+
+    private void grow(int capacity) {
+        for (int i = mCapacity * VERTICES_PER_SEGMENT; i < capacity * VERTICES_PER_SEGMENT; i++) {
+            mVertices.add(mUnused);
+        }
+        for (int i = mCapacity * INDICES_PER_SEGMENT; i < capacity * INDICES_PER_SEGMENT; i++) {
+            mIndices.add(0);
+        }
+        mCapacity = capacity;
+    }
+
+    private void update() {
+        if (mBuilding) {
+            // Picked up when the renderable is ready
+            mDirty = true;
+            return;
+        }
+        if (mRenderable != null) {
+            mRenderable.updateFromDefinition(definition(mMaterial.join()));
+            return;
+        }
+        if (mSegments == 0) {
+            return;
+        }
+        // The first segment builds the renderable, asynchronously once
+        mBuilding = true;
+        mMaterial.thenCompose(material -> ModelRenderable.builder().setSource(definition(material)).build())
+                .thenAccept(renderable -> {
+                    renderable.setShadowCaster(false);
+                    renderable.setShadowReceiver(false);
+                    mRenderable = renderable;
+                    mNode.setRenderable(renderable);
+                    mBuilding = false;
+                    if (mDirty) {
+                        mDirty = false;
+                        update();
+                    }
+                });
+    }
+
+    private RenderableDefinition definition(Material material) {
+        RenderableDefinition.Submesh submesh = RenderableDefinition.Submesh.builder()
+                .setTriangleIndices(mIndices)
+                .setMaterial(material)
+                .build();
+        return RenderableDefinition.builder()
+                .setVertices(mVertices)
+                .setSubmeshes(Collections.singletonList(submesh))
+                .build();
+    }
+
+    private static Vertex vertex(Vector3 position, Vector3 normal) {
+        return Vertex.builder().setPosition(position).setNormal(normal).build();
+    }
+}
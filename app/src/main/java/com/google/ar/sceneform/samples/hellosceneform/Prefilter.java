@@ -0,0 +1,170 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+// Noise filter in front of Canny, selected through CornerDetectOptions.setPrefilter().
+// Rough cost on a 480x640 frame (benchmark module, PrefilterBenchmark): bilateral(10) ~12 ms,
+// bilateral(5) ~1.5 ms, the others below 0.5 ms. PrefilterAccuracy compares the detections.
+public abstract class Prefilter {
+
+    // Empty dsize, resize() then scales by fx/fy
+    private static final Size SCALE_BY_FACTOR = new Size();
+
+    // The filter of the original pipeline
+    public static final Prefilter DEFAULT = bilateral(10);
+
+    // Edge preserving, cost grows with diameter^2
+    public static Prefilter bilateral(int diameter) {
+        if (diameter < 1)
+            throw new IllegalArgumentException("Bilateral diameter must be positive: " + diameter);
+        return new Bilateral(diameter);
+    }
+
+    public static Prefilter gaussian(int kernelSize) {
+        return new Gaussian(checkOdd(kernelSize));
+    }
+
+    // Median over an image downscaled by factor, scaled back up for Canny
+    public static Prefilter medianDownscaled(int kernelSize, int factor) {
+        return new Downscaled(checkOdd(kernelSize), checkFactor(factor), true);
+    }
+
+    // Box blur over an image downscaled by factor, scaled back up for Canny
+    public static Prefilter boxDownscaled(int kernelSize, int factor) {
+        return new Downscaled(checkOdd(kernelSize), checkFactor(factor), false);
+    }
+
+    // Canny runs on the input as it is
+    public static Prefilter none() {
+        return None.INSTANCE;
+    }
+
+    // Filters src and returns the image Canny should run on, dst or src itself.
+    // Temporary Mats come from the workspace so nothing is allocated per frame.
+    abstract Mat apply(Mat src, Mat dst, CornerWorkspace ws);
+
+    // Distance in pixels over which an input pixel affects the output,
+    // TiledCornerDetector sizes the overlap of its strips with it
+    abstract int radius();
+
+    private static int checkOdd(int kernelSize) {
+        if (kernelSize < 1 || kernelSize % 2 == 0)
+            throw new IllegalArgumentException("Kernel size must be odd and positive: " + kernelSize);
+        return kernelSize;
+    }
+
+    private static int checkFactor(int factor) {
+        if (factor < 1)
+            throw new IllegalArgumentException("Downscale factor must be positive: " + factor);
+        return factor;
+    }
+
+    private static final class Bilateral extends Prefilter {
+        private final int mDiameter;
+
+        Bilateral(int diameter) {
+            mDiameter = diameter;
+        }
+
+        @Override
+        Mat apply(Mat src, Mat dst, CornerWorkspace ws) {
+            Imgproc.bilateralFilter(src, dst, mDiameter, 100, 100);
+            return dst;
+        }
+
+        @Override
+        int radius() {
+            return mDiameter / 2;
+        }
+
+        @Override
+        public String toString() {
+            return "bilateral(" + mDiameter + ")";
+        }
+    }
+
+    private static final class Gaussian extends Prefilter {
+        private final Size mKernel;
+
+        Gaussian(int kernelSize) {
+            mKernel = new Size(kernelSize, kernelSize);
+        }
+
+        @Override
+        Mat apply(Mat src, Mat dst, CornerWorkspace ws) {
+            Imgproc.GaussianBlur(src, dst, mKernel, 0);
+            return dst;
+        }
+
+        @Override
+        int radius() {
+            return (int) mKernel.width / 2;
+        }
+
+        @Override
+        public String toString() {
+            return "gaussian(" + (int) mKernel.width + ")";
+        }
+    }
+
+    private static final class Downscaled extends Prefilter {
+        private final int mKernelSize;
+        private final Size mKernel;
+        private final double mScale;
+        private final boolean mMedian;
+
+        Downscaled(int kernelSize, int factor, boolean median) {
+            mKernelSize = kernelSize;
+            mKernel = new Size(kernelSize, kernelSize);
+            mScale = 1.0 / factor;
+            mMedian = median;
+        }
+
+        @Override
+        Mat apply(Mat src, Mat dst, CornerWorkspace ws) {
+            // INTER_AREA already averages the dropped pixels, the filter runs on 1/factor^2 of them
+            Imgproc.resize(src, ws.prefilterSmall, SCALE_BY_FACTOR, mScale, mScale, Imgproc.INTER_AREA);
+            if (mMedian) {
+                Imgproc.medianBlur(ws.prefilterSmall, ws.prefilterSmall, mKernelSize);
+            } else {
+                Imgproc.blur(ws.prefilterSmall, ws.prefilterSmall, mKernel);
+            }
+            // Back to the input size, so the corners keep the coordinates of the input
+            Imgproc.resize(ws.prefilterSmall, dst, src.size(), 0, 0, Imgproc.INTER_LINEAR);
+            return dst;
+        }
+
+        @Override
+        int radius() {
+            // Kernel radius on the small image, plus one small pixel for each resize
+            int factor = (int) Math.round(1 / mScale);
+            return (mKernelSize / 2 + 2) * factor;
+        }
+
+        @Override
+        public String toString() {
+            return (mMedian ? "median(" : "box(") + mKernelSize + ", 1/" + Math.round(1 / mScale) + ")";
+        }
+    }
+
+    private static final class None extends Prefilter {
+        static final None INSTANCE = new None();
+
+        @Override
+        Mat apply(Mat src, Mat dst, CornerWorkspace ws) {
+            return src;
+        }
+
+        @Override
+        int radius() {
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "none";
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import android.content.Context;
+
+import com.chaquo.python.Python;
+import com.chaquo.python.android.AndroidPlatform;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+
+import image_transformer.FrameTransformer;
+
+// Runs the numpy stages of image_transformer.py on whole frames without copying them.
+// Only the native address, size and row step of the source and destination cross the
+// bridge; Python wraps that memory as numpy arrays and writes the result in place.
+// Frames are 8-bit Mats, or direct ByteBuffers wrapped with wrap().
+public class PythonFrameBridge {
+
+    private final FrameTransformer mTransformer;
+
+    public PythonFrameBridge(Context context) {
+        if (!Python.isStarted()) {
+            Python.start(new AndroidPlatform(context.getApplicationContext()));
+        }
+        mTransformer = Python.getInstance().getModule("image_transformer")
+                .get("FrameTransformer").call().toJava(FrameTransformer.class);
+    }
+
+    // Mat header over the memory of a direct ByteBuffer, the buffer must outlive it
+    public static Mat wrap(ByteBuffer buffer, int rows, int cols, int type) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer must be direct");
+        }
+        return new Mat(rows, cols, type, buffer);
+    }
+
+    // Runs the stage registered under name in image_transformer.STAGES on src. dst is
+    // allocated when empty, otherwise it must have the size and type of src.
+    public void process(String stage, Mat src, Mat dst) {
+        if (src.depth() != CvType.CV_8U) {
+            throw new IllegalArgumentException("Only 8-bit frames are supported: " + CvType.typeToString(src.type()));
+        }
+        if (dst.empty()) {
+            dst.create(src.size(), src.type());
+        } else if (!dst.size().equals(src.size()) || dst.type() != src.type()) {
+            throw new IllegalArgumentException("dst does not match src: " + dst + ", " + src);
+        }
+        mTransformer.process(stage, src.dataAddr(), src.rows(), src.cols(), src.channels(),
+                src.step1(), dst.dataAddr(), dst.step1());
+    }
+}
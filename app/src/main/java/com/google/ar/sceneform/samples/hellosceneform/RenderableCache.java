@@ -0,0 +1,61 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import android.content.Context;
+
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.ShapeFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// One opaque material and one unit cube per color, shared by every measurement segment.
+// A segment is a node that scales and turns the unit cube between its two end points, so
+// a tap creates no material and no mesh and needs no asynchronous completion once the
+// color has been used (or preloaded) once.
+// UI thread only, like the Sceneform factories.
+public class RenderableCache {
+
+    private final Context mContext;
+    private final HashMap<List<Float>, CompletableFuture<Material>> mMaterials = new HashMap<>();
+    private final HashMap<List<Float>, CompletableFuture<ModelRenderable>> mUnitCubes = new HashMap<>();
+
+    public RenderableCache(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public CompletableFuture<Material> material(Color color) {
+        return mMaterials.computeIfAbsent(key(color),
+                key -> MaterialFactory.makeOpaqueWithColor(mContext, color));
+    }
+
+    // 1 x 1 x 1 m cube centered on its node
+    public CompletableFuture<ModelRenderable> unitCube(Color color) {
+        return mUnitCubes.computeIfAbsent(key(color), key -> material(color)
+                .thenApply(material -> ShapeFactory.makeCube(Vector3.one(), Vector3.zero(), material)));
+    }
+
+    // Bar of the given thickness from one world point to the other, as a child of parent
+    public Node segment(Node parent, Vector3 from, Vector3 to, float thickness, Color color) {
+        Vector3 difference = Vector3.subtract(from, to);
+        Node node = new Node();
+        node.setParent(parent);
+        node.setWorldPosition(Vector3.add(from, to).scaled(.5f));
+        node.setWorldRotation(Quaternion.lookRotation(difference.normalized(), Vector3.up()));
+        node.setWorldScale(new Vector3(thickness, thickness, difference.length()));
+        // Immediate unless this is the first use of the color
+        unitCube(color).thenAccept(node::setRenderable);
+        return node;
+    }
+
+    private static List<Float> key(Color color) {
+        return Arrays.asList(color.r, color.g, color.b, color.a);
+    }
+}
@@ -0,0 +1,202 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Measures the foot on a sheet of known size from the four sheet corners of one frame,
+// without any hit tests: the corners give the homography from the image to the sheet,
+// the frame is warped onto the sheet at PIXELS_PER_MM and the foot, the dark region on
+// the bright sheet, is measured there in millimeters. The foot may reach one side of the
+// sheet, heel or toes at its edge; dark regions that reach two or more sides are taken for
+// floor. Only the part of the foot on the sheet is measured.
+// Android-free like CornorDetect; one thread at a time.
+public class SheetMeasurer {
+
+    public static final double A4_WIDTH_MM = 210;
+    public static final double A4_HEIGHT_MM = 297;
+
+    public static class Result {
+        // Along the long side of the sheet, and across it
+        public final double lengthMm;
+        public final double widthMm;
+
+        Result(double lengthMm, double widthMm) {
+            this.lengthMm = lengthMm;
+            this.widthMm = widthMm;
+        }
+    }
+
+    static final double PIXELS_PER_MM = 2;
+    // Sheet border that is ignored, the corners are not exact and let the floor in
+    private static final double MARGIN_MM = 2;
+    // How far the long to short side ratio of the corners may be off the sheet's, perspective included
+    private static final double MAX_ASPECT_ERROR = 1.5;
+    // Smallest foot worth measuring, smaller dark regions are dirt or shadows
+    private static final double MIN_FOOT_AREA_MM2 = 2000;
+
+    // Warped sheet in pixels
+    private final Size mSheetSize;
+    private final double mAspect;
+
+    private final MatOfPoint2f mImageCorners = new MatOfPoint2f();
+    private final MatOfPoint2f mSheetCorners = new MatOfPoint2f();
+    private final Mat mSheet = new Mat();
+    private final Mat mMask = new Mat();
+    private final Mat mHierarchy = new Mat();
+    private final Mat mKernel = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5, 5));
+    private final List<MatOfPoint> mContours = new ArrayList<>();
+
+    public SheetMeasurer() {
+        this(A4_WIDTH_MM, A4_HEIGHT_MM);
+    }
+
+    public SheetMeasurer(double widthMm, double heightMm) {
+        if (widthMm <= 0 || heightMm < widthMm) {
+            throw new IllegalArgumentException("Sheet must be width <= height: " + widthMm + " x " + heightMm);
+        }
+        mAspect = heightMm / widthMm;
+        mSheetSize = new Size(Math.round(widthMm * PIXELS_PER_MM), Math.round(heightMm * PIXELS_PER_MM));
+    }
+
+    // corners are the four sheet corners in gray, in any order (CornorDetect.getPoint()).
+    // Returns null when they do not form a sheet or there is no foot on it.
+    public Result measure(Mat gray, List<Point> corners) {
+        if (corners == null || corners.size() != 4) {
+            return null;
+        }
+        Point[] ordered = orderCorners(corners);
+        if (ordered == null) {
+            return null;
+        }
+        mImageCorners.fromArray(ordered);
+        mSheetCorners.fromArray(
+                new Point(0, 0),
+                new Point(mSheetSize.width, 0),
+                new Point(mSheetSize.width, mSheetSize.height),
+                new Point(0, mSheetSize.height));
+        Mat homography = Imgproc.getPerspectiveTransform(mImageCorners, mSheetCorners);
+        Imgproc.warpPerspective(gray, mSheet, homography, mSheetSize, Imgproc.INTER_LINEAR);
+        homography.release();
+
+        // The foot is darker than the sheet around it
+        Imgproc.threshold(mSheet, mMask, 0, 255, Imgproc.THRESH_BINARY_INV | Imgproc.THRESH_OTSU);
+        int margin = (int) Math.round(MARGIN_MM * PIXELS_PER_MM);
+        Imgproc.rectangle(mMask, new Point(0, 0), new Point(mMask.cols() - 1, mMask.rows() - 1),
+                new Scalar(0), 2 * margin);
+        Imgproc.morphologyEx(mMask, mMask, Imgproc.MORPH_OPEN, mKernel);
+        // Regions starting right after the cleared margin touch the border
+        int border = margin + 2;
+
+        mContours.clear();
+        Imgproc.findContours(mMask, mContours, mHierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+        MatOfPoint foot = null;
+        double footArea = MIN_FOOT_AREA_MM2 * PIXELS_PER_MM * PIXELS_PER_MM;
+        // Whether the foot reaches a short side (heel or toes at the edge) or a long one
+        boolean footAtEnd = false;
+        boolean footAtSide = false;
+        for (MatOfPoint contour : mContours) {
+            Rect bounds = Imgproc.boundingRect(contour);
+            boolean left = bounds.x <= border;
+            boolean top = bounds.y <= border;
+            boolean right = bounds.x + bounds.width >= mMask.cols() - border;
+            boolean bottom = bounds.y + bounds.height >= mMask.rows() - border;
+            // Floor that got in along an inexact sheet edge runs along it into the corners
+            if ((left ? 1 : 0) + (top ? 1 : 0) + (right ? 1 : 0) + (bottom ? 1 : 0) > 1) {
+                continue;
+            }
+            double area = Imgproc.contourArea(contour);
+            if (area >= footArea) {
+                foot = contour;
+                footArea = area;
+                footAtEnd = top || bottom;
+                footAtSide = left || right;
+            }
+        }
+        Result result = null;
+        if (foot != null) {
+            RotatedRect box = Imgproc.minAreaRect(new MatOfPoint2f(foot.toArray()));
+            double a = box.size.width / PIXELS_PER_MM;
+            double b = box.size.height / PIXELS_PER_MM;
+            // The cleared margin cut off the foot between it and the edge the foot reaches
+            result = new Result(Math.max(a, b) + (footAtEnd ? MARGIN_MM : 0),
+                    Math.min(a, b) + (footAtSide ? MARGIN_MM : 0));
+        }
+        for (MatOfPoint contour : mContours) {
+            contour.release();
+        }
+        return result;
+    }
+
+    public void release() {
+        mImageCorners.release();
+        mSheetCorners.release();
+        mSheet.release();
+        mMask.release();
+        mHierarchy.release();
+        mKernel.release();
+    }
+
+    // The corners clockwise, starting at one end of a short side, so that they map onto
+    // (0, 0), (width, 0), (width, height), (0, height) of the sheet. Null when they are not
+    // a convex quadrilateral with about the proportions of the sheet.
+    private Point[] orderCorners(List<Point> corners) {
+        double cx = 0;
+        double cy = 0;
+        for (Point corner : corners) {
+            cx += corner.x / 4;
+            cy += corner.y / 4;
+        }
+        Point[] ordered = corners.toArray(new Point[4]);
+        // Clockwise on screen, where y points down
+        double centerX = cx;
+        double centerY = cy;
+        Arrays.sort(ordered, (p, q) -> Double.compare(
+                Math.atan2(p.y - centerY, p.x - centerX), Math.atan2(q.y - centerY, q.x - centerX)));
+        if (!isConvex(ordered)) {
+            return null;
+        }
+        // Opposite sides are averaged, perspective shortens the far one
+        double side01 = distance(ordered[0], ordered[1]) + distance(ordered[2], ordered[3]);
+        double side12 = distance(ordered[1], ordered[2]) + distance(ordered[3], ordered[0]);
+        double aspect = Math.max(side01, side12) / Math.min(side01, side12);
+        if (aspect > mAspect * MAX_ASPECT_ERROR || aspect < mAspect / MAX_ASPECT_ERROR) {
+            return null;
+        }
+        if (side01 > side12) {
+            Point first = ordered[0];
+            ordered[0] = ordered[1];
+            ordered[1] = ordered[2];
+            ordered[2] = ordered[3];
+            ordered[3] = first;
+        }
+        return ordered;
+    }
+
+    private static boolean isConvex(Point[] quad) {
+        for (int i = 0; i < 4; i++) {
+            Point a = quad[i];
+            Point b = quad[(i + 1) % 4];
+            Point c = quad[(i + 2) % 4];
+            double cross = (b.x - a.x) * (c.y - b.y) - (b.y - a.y) * (c.x - b.x);
+            if (cross <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double distance(Point a, Point b) {
+        return Math.hypot(a.x - b.x, a.y - b.y);
+    }
+}
@@ -0,0 +1,143 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.ShapeFactory;
+
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Starts everything the activity needs at once instead of on first use: the OpenCV natives
+// (plus one warm-up detection, so the first real one does not pay for the cold start),
+// the Python interpreter with image_transformer and numpy imported, and the two cube
+// renderables. OpenCV and Python load on their own background threads; Sceneform wants
+// the main thread, its factories are asynchronous already and are only kicked off here.
+// Each part is a future, report() tells how long every part took. A part that fails
+// completes its future exceptionally, the activity reports it.
+public class StartupOrchestrator {
+
+    private static final String TAG = "StartupOrchestrator";
+
+    // Size of the warm-up frame, the upright camera image
+    private static final int WARM_UP_WIDTH = 480;
+    private static final int WARM_UP_HEIGHT = 640;
+
+    private final Context mContext;
+    private final CornerDetectOptions mDetectOptions;
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "Startup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long mStartNanos;
+    // Milliseconds from start() to the end of each part, -1 while running
+    private volatile long mOpenCvMillis = -1;
+    private volatile long mPythonMillis = -1;
+    private volatile long mRenderablesMillis = -1;
+
+    private CompletableFuture<Boolean> mOpenCv;
+    private CompletableFuture<PythonFrameBridge> mPython;
+    private CompletableFuture<ModelRenderable> mCube;
+    private CompletableFuture<ModelRenderable> mHeightCube;
+
+    public StartupOrchestrator(Context context, CornerDetectOptions detectOptions) {
+        mContext = context;
+        mDetectOptions = detectOptions;
+    }
+
+    // Called once on the main thread, as early as possible
+    public void start() {
+        mStartNanos = System.nanoTime();
+
+        mOpenCv = CompletableFuture.supplyAsync(this::loadOpenCv, mExecutor);
+        mOpenCv.whenComplete((loaded, e) -> mOpenCvMillis = elapsedMillis());
+        mPython = CompletableFuture.supplyAsync(() -> new PythonFrameBridge(mContext), mExecutor);
+        mPython.whenComplete((bridge, e) -> mPythonMillis = elapsedMillis());
+
+        mCube = makeCube(new Vector3(0.01f, 0.01f, 0.01f));
+        mHeightCube = makeCube(new Vector3(0.007f, 0.1f, 0.007f));
+        CompletableFuture.allOf(mCube, mHeightCube).whenComplete((v, e) -> mRenderablesMillis = elapsedMillis());
+
+        CompletableFuture.allOf(mOpenCv, mPython).whenComplete((v, e) -> mExecutor.shutdown());
+        all().whenComplete((v, e) -> Log.i(TAG, report()));
+    }
+
+    // True when the natives are in the package, false when OpenCV Manager has to provide them
+    public CompletableFuture<Boolean> openCv() {
+        return mOpenCv;
+    }
+
+    public CompletableFuture<PythonFrameBridge> python() {
+        return mPython;
+    }
+
+    public CompletableFuture<ModelRenderable> cube() {
+        return mCube;
+    }
+
+    public CompletableFuture<ModelRenderable> heightCube() {
+        return mHeightCube;
+    }
+
+    public CompletableFuture<Void> all() {
+        return CompletableFuture.allOf(mOpenCv, mPython, mCube, mHeightCube);
+    }
+
+    public String report() {
+        return String.format(Locale.US, "Startup: OpenCV %s, Python %s, renderables %s",
+                format(mOpenCvMillis), format(mPythonMillis), format(mRenderablesMillis));
+    }
+
+    private boolean loadOpenCv() {
+        if (!OpenCVLoader.initDebug()) {
+            return false;
+        }
+        // A sheet on the floor, so every stage of the pipeline runs once
+        Mat frame = new Mat(WARM_UP_HEIGHT, WARM_UP_WIDTH, CvType.CV_8UC1, new Scalar(60));
+        Imgproc.rectangle(frame, new Point(90, 120), new Point(390, 520), new Scalar(220), -1);
+        try {
+            CornorDetect.getCorner(frame, mDetectOptions);
+        } catch (RuntimeException e) {
+            // The natives are loaded, only the first real detection pays for the cold start
+            Log.w(TAG, "Warm-up detection failed", e);
+        } finally {
+            frame.release();
+            // The workspace belongs to this thread, which is gone after startup
+            CornorDetect.releaseWorkspace();
+        }
+        return true;
+    }
+
+    private CompletableFuture<ModelRenderable> makeCube(Vector3 size) {
+        return MaterialFactory.makeTransparentWithColor(mContext, new Color(0F, 0F, 244F))
+                .thenApply(material -> {
+                    ModelRenderable cube = ShapeFactory.makeCube(size, Vector3.zero(), material);
+                    cube.setShadowCaster(false);
+                    cube.setShadowReceiver(false);
+                    return cube;
+                });
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - mStartNanos) / 1000000;
+    }
+
+    private static String format(long millis) {
+        return millis < 0 ? "pending" : millis + " ms";
+    }
+}
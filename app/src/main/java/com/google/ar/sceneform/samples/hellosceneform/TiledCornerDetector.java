@@ -0,0 +1,171 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// CornorDetect.getCorner() on several cores: the detection level is cut into horizontal
+// strips that run prefilter, Canny, Harris and the candidate extraction in parallel on a
+// ForkJoinPool, each in its own CornerWorkspace. Every strip also reads a halo of rows
+// above and below it so the filters see the same neighbourhood as on the whole image,
+// and only keeps the candidates in its own rows. The strips are merged top to bottom,
+// which keeps the row-major candidate order getPoint() relies on. The clustering in
+// getPoint() and the cornerSubPix refinement then run on the calling thread, they only
+// see the candidates and four corners and take a small part of the detection.
+// The strips record their stages into the metrics of the options each, in parallel, so
+// the prefilter to extraction histograms count one sample per strip.
+// Like a CornerWorkspace, a detector must only be used by one thread at a time.
+public class TiledCornerDetector {
+
+    // Canny (3x3 Sobel and the non-maximum suppression) and Harris (blockSize 2, 3x3 Sobel)
+    private static final int EDGE_HALO = 4;
+    // Canny's hysteresis follows edges across any distance, a few more rows keep
+    // the edges near the strip borders the same as on the whole image
+    private static final int HYSTERESIS_HALO = 16;
+
+    private final ForkJoinPool mPool;
+    private final Strip[] mStrips;
+    // Merged candidates, pyramid and cornerSubPix buffers of the whole image
+    private final CornerWorkspace mMerged = new CornerWorkspace();
+
+    public TiledCornerDetector(int strips) {
+        if (strips < 1)
+            throw new IllegalArgumentException("Strips must be positive: " + strips);
+        mPool = new ForkJoinPool(strips);
+        mStrips = new Strip[strips];
+        for (int i = 0; i < strips; i++) {
+            mStrips[i] = new Strip();
+        }
+    }
+
+    public ArrayList<Point> getCorner(Mat gray, CornerDetectOptions options) {
+        PipelineMetrics metrics = options.metrics;
+        long t = metrics.now();
+        Mat level = mMerged.downscale(gray, options.pyramidLevels);
+        int rows = level.rows();
+        int cols = level.cols();
+        int halo = options.prefilter.radius() + EDGE_HALO + HYSTERESIS_HALO;
+
+        // Strips thinner than their halo would mostly filter rows of their neighbours
+        int strips = Math.max(1, Math.min(mStrips.length, rows / halo));
+        for (int i = 0; i < strips; i++) {
+            mStrips[i].prepare(level, rows * i / strips, rows * (i + 1) / strips, halo, options.prefilter, metrics);
+        }
+        t = metrics.record(PipelineMetrics.Stage.PYRAMID, t);
+        mPool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                for (int i = 1; i < strips; i++) {
+                    mStrips[i].fork();
+                }
+                mStrips[0].invoke();
+                for (int i = 1; i < strips; i++) {
+                    mStrips[i].join();
+                }
+            }
+        });
+
+        int count = 0;
+        for (int i = 0; i < strips; i++) {
+            count += mStrips[i].mCount;
+        }
+        if (count < 5) {
+            return null;
+        }
+        mMerged.ensureSize(rows, cols);
+        mMerged.ensureCandidates(count);
+        int offset = 0;
+        for (int i = 0; i < strips; i++) {
+            Strip strip = mStrips[i];
+            System.arraycopy(strip.mWorkspace.xy, 0, mMerged.xy, offset, 2 * strip.mCount);
+            offset += 2 * strip.mCount;
+        }
+        t = metrics.now();
+
+        ArrayList<Point> points = CornorDetect.getPoint(mMerged, count, cols, rows);
+        t = metrics.record(PipelineMetrics.Stage.CLUSTER, t);
+        if (points == null) {
+            return null;
+        }
+        if (options.pyramidLevels > 0) {
+            CornorDetect.refineCorners(gray, points, options.getScale(), mMerged);
+            metrics.record(PipelineMetrics.Stage.REFINE, t);
+        }
+        return points;
+    }
+
+    // Stops the pool and frees the native buffers. Must not be called during getCorner().
+    public void release() {
+        mPool.shutdown();
+        for (Strip strip : mStrips) {
+            strip.mWorkspace.release();
+        }
+        mMerged.release();
+    }
+
+    private static class Strip extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final CornerWorkspace mWorkspace = new CornerWorkspace();
+
+        private Mat mLevel;
+        private Prefilter mPrefilter;
+        private PipelineMetrics mMetrics;
+        // Own rows of the strip, and the rows read including the halo
+        private int mStart;
+        private int mEnd;
+        private int mTop;
+        private int mBottom;
+        // Candidates in the own rows, in image coordinates
+        int mCount;
+
+        void prepare(Mat level, int start, int end, int halo, Prefilter prefilter, PipelineMetrics metrics) {
+            // A ForkJoinTask only runs once, it has to be reset for every frame
+            reinitialize();
+            mLevel = level;
+            mPrefilter = prefilter;
+            mMetrics = metrics;
+            mStart = start;
+            mEnd = end;
+            mTop = Math.max(0, start - halo);
+            mBottom = Math.min(level.rows(), end + halo);
+            mCount = 0;
+        }
+
+        @Override
+        protected void compute() {
+            CornerWorkspace ws = mWorkspace;
+            PipelineMetrics metrics = mMetrics;
+            long t = metrics.now();
+            Mat band = mLevel.submat(mTop, mBottom, 0, mLevel.cols());
+            ws.ensureSize(band.rows(), band.cols());
+
+            Mat filtered = CornorDetect.blur(band, ws, mPrefilter);
+            t = metrics.record(PipelineMetrics.Stage.PREFILTER, t);
+            CornorDetect.edges(filtered, ws);
+            t = metrics.record(PipelineMetrics.Stage.CANNY, t);
+            CornorDetect.harris(ws);
+            t = metrics.record(PipelineMetrics.Stage.HARRIS, t);
+            int found = CornorDetect.extract(ws);
+            band.release();
+
+            // Drop the halo rows and move the rest to image coordinates, in place
+            int count = 0;
+            for (int k = 0; k < found; k++) {
+                int y = ws.xy[2 * k + 1] + mTop;
+                if (y >= mStart && y < mEnd) {
+                    ws.xy[2 * count] = ws.xy[2 * k];
+                    ws.xy[2 * count + 1] = y;
+                    count++;
+                }
+            }
+            mCount = count;
+            metrics.record(PipelineMetrics.Stage.EXTRACT, t);
+        }
+    }
+}
@@ -1,52 +1,49 @@
 package com.google.ar.sceneform.samples.hellosceneform;
 
 import android.graphics.Bitmap;
-import android.graphics.ImageFormat;
 import android.graphics.Matrix;
-import android.graphics.Rect;
-import android.graphics.YuvImage;
 import android.media.Image;
 
-import java.io.ByteArrayOutputStream;
-import java.nio.ByteBuffer;
+import org.opencv.android.Utils;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
 
 public class UtilsBitmap {
 
 
 
-    public static byte[] imageToByte(Image image){
-        byte[] byteArray = null;
-        byteArray = NV21toJPEG(YUV420toNV21(image),image.getWidth(),image.getHeight(),100);
-        return byteArray;
+    // RGBA image of a YUV_420_888 camera image, converted by the (pooled) converter.
+    // Valid until the next call on the same converter.
+    public static Mat imageToRgba(Image image, YuvConverter converter){
+        Image.Plane[] planes = image.getPlanes();
+        return converter.toRgba(
+                planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight());
     }
 
-    private static byte[] NV21toJPEG(byte[] nv21, int width, int height, int quality) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        YuvImage yuv = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
-        yuv.compressToJpeg(new Rect(0, 0, width, height), quality, out);
-        return out.toByteArray();
+    // Wraps the Y plane of a YUV_420_888 image as a CV_8UC1 Mat without copying.
+    // The Mat points into the image buffer, so it is only valid until image.close().
+    public static Mat wrapYPlane(Image image){
+        Image.Plane yPlane = image.getPlanes()[0];
+        return YuvConverter.wrap(yPlane.getBuffer(), image.getHeight(), image.getWidth(), yPlane.getRowStride(), 1);
     }
 
-    private static byte[] YUV420toNV21(Image image) {
-        byte[] nv21;
-        // Get the three planes.
-        ByteBuffer yBuffer = image.getPlanes()[0].getBuffer();
-        ByteBuffer uBuffer = image.getPlanes()[1].getBuffer();
-        ByteBuffer vBuffer = image.getPlanes()[2].getBuffer();
-
-        int ySize = yBuffer.remaining();
-        int uSize = uBuffer.remaining();
-        int vSize = vBuffer.remaining();
-
-
-        nv21 = new byte[ySize + uSize + vSize];
-
-        //U and V are swapped
-        yBuffer.get(nv21, 0, ySize);
-        vBuffer.get(nv21, ySize, vSize);
-        uBuffer.get(nv21, ySize + vSize, uSize);
+    // Gray image in the same orientation as rotateBitmap(bitmap, 90) of the JPEG path.
+    // The rotation is the only copy, after it the image can be closed.
+    public static void imageToGray(Image image, Mat gray){
+        Mat yMat = wrapYPlane(image);
+        Core.rotate(yMat, gray, Core.ROTATE_90_CLOCKWISE);
+        yMat.release();
+    }
 
-        return nv21;
+    public static void bitmapToGray(Bitmap bitmap, Mat gray){
+        Mat img = new Mat();
+        Utils.bitmapToMat(bitmap, img);
+        Imgproc.cvtColor(img, gray, Imgproc.COLOR_RGBA2GRAY);
+        img.release();
     }
 
     public static Bitmap rotateBitmap(Bitmap bitmap, float degree){
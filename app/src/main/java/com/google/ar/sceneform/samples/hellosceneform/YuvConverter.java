@@ -0,0 +1,123 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+
+// YUV_420_888 -> RGBA conversion for the color path (preview, saving). NV12 and NV21 go
+// straight to cvtColorTwoPlane, any other layout is gathered into planar I420 first.
+// Works on raw plane buffers so it does not depend on android.media.Image,
+// see UtilsBitmap.imageToRgba() for the Image entry point.
+// The destination Mats are reused between calls, so the returned Mat is only
+// valid until the next call. Not thread safe, use one converter per thread.
+public class YuvConverter {
+
+    private final Mat mRgba = new Mat();
+    private final Mat mRotated = new Mat();
+    // Planar I420 staging image for layouts that can not be fed to cvtColorTwoPlane directly
+    private final Mat mI420 = new Mat();
+
+    public Mat toRgba(ByteBuffer yBuffer, int yRowStride,
+                      ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                      int width, int height) {
+        if (width % 2 != 0 || height % 2 != 0)
+            throw new IllegalArgumentException("YUV_420_888 size must be even: " + width + "x" + height);
+
+        Mat y = wrap(yBuffer, height, width, yRowStride, 1);
+
+        // Semi-planar images are two views of one interleaved buffer, one byte apart: U first
+        // is NV12, V first is NV21. The plane that starts first already is the interleaved
+        // chroma plane. cvtColorTwoPlane takes a single row step for both planes, hence the
+        // stride check.
+        long chromaOrder = 0;
+        if (uvPixelStride == 2 && yRowStride == uvRowStride) {
+            chromaOrder = chromaOrder(uBuffer, vBuffer, uvRowStride, width, height);
+        }
+        if (chromaOrder == 1) {
+            Mat uv = wrap(uBuffer, height / 2, width / 2, uvRowStride, 2);
+            Imgproc.cvtColorTwoPlane(y, uv, mRgba, Imgproc.COLOR_YUV2RGBA_NV12);
+            uv.release();
+        } else if (chromaOrder == -1) {
+            Mat vu = wrap(vBuffer, height / 2, width / 2, uvRowStride, 2);
+            Imgproc.cvtColorTwoPlane(y, vu, mRgba, Imgproc.COLOR_YUV2RGBA_NV21);
+            vu.release();
+        } else {
+            // Any other layout is gathered into planar I420. Only the chroma is really moved around,
+            // which is a quarter of the luma size per plane.
+            mI420.create(height * 3 / 2, width, CvType.CV_8UC1);
+
+            Mat yDst = mI420.submat(0, height, 0, width);
+            y.copyTo(yDst);
+            yDst.release();
+
+            copyChroma(uBuffer, uvRowStride, uvPixelStride, width, height, width * height);
+            copyChroma(vBuffer, uvRowStride, uvPixelStride, width, height, width * height * 5 / 4);
+
+            Imgproc.cvtColor(mI420, mRgba, Imgproc.COLOR_YUV2RGBA_I420, 4);
+        }
+        y.release();
+        return mRgba;
+    }
+
+    // Rotates an image returned by toRgba() into a second pooled Mat
+    public Mat rotate(Mat rgba, int rotateCode) {
+        Core.rotate(rgba, mRotated, rotateCode);
+        return mRotated;
+    }
+
+    public void release() {
+        mRgba.release();
+        mRotated.release();
+        mI420.release();
+    }
+
+    // Copies one chroma plane into its packed (width/2 x height/2) place inside mI420, which
+    // starts offset bytes into it. Unless height is a multiple of 4 the plane starts and ends
+    // in the middle of an mI420 row, so it is cut out of the flat buffer, not out of rows.
+    private void copyChroma(ByteBuffer buffer, int rowStride, int pixelStride, int width, int height, int offset) {
+        Mat flat = mI420.reshape(1, 1);
+        Mat plane = flat.colRange(offset, offset + width * height / 4);
+        Mat dst = plane.reshape(1, height / 2);
+        flat.release();
+
+        if (pixelStride == 1) {
+            Mat src = wrap(buffer, height / 2, width / 2, rowStride, 1);
+            src.copyTo(dst);
+            src.release();
+        } else if (pixelStride == 2) {
+            Mat src = wrap(buffer, height / 2, width / 2, rowStride, 2);
+            Core.extractChannel(src, dst, 0);
+            src.release();
+        } else {
+            plane.release();
+            dst.release();
+            throw new IllegalArgumentException("Unsupported chroma pixel stride: " + pixelStride);
+        }
+        plane.release();
+        dst.release();
+    }
+
+    // Wraps a plane as rows x cols elements of the given channel count with an arbitrary row stride.
+    // The padding of the last row may be missing from the buffer, the submat never touches it.
+    public static Mat wrap(ByteBuffer buffer, int rows, int cols, int rowStride, int channels) {
+        Mat padded = new Mat(rows, rowStride / channels, CvType.makeType(CvType.CV_8U, channels), buffer);
+        Mat plane = padded.submat(0, rows, 0, cols);
+        padded.release();
+        return plane;
+    }
+
+    // Address of the V plane minus that of the U plane, as in JavaCamera2View.rgba():
+    // 1 for NV12, -1 for NV21, anything else for separate planes. Only looks at the
+    // addresses, the camera's buffers are not touched.
+    static long chromaOrder(ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int width, int height) {
+        Mat u = wrap(uBuffer, height / 2, width / 2, uvRowStride, 2);
+        Mat v = wrap(vBuffer, height / 2, width / 2, uvRowStride, 2);
+        long difference = v.dataAddr() - u.dataAddr();
+        u.release();
+        v.release();
+        return difference;
+    }
+}
@@ -2,7 +2,7 @@ from __future__ import absolute_import, division, print_function
 
 from java import dynamic_proxy, jboolean, jvoid, Override
 from java import constructor, method, static_proxy, jint
-from java import cast, jarray
+from java import cast, jarray, jlong
 
 #from android.app import AlertDialog
 #from android.content import Context, DialogInterface
@@ -20,6 +20,7 @@ from java import cast, jarray
 from java.lang import String
 from types import MappingProxyType
 
+import ctypes
 import numpy as np
 from array import array
 
@@ -39,4 +40,52 @@ class BasicTransformer(static_proxy()):
         print("Python: ", type(x))
         print("Python: ", type(x[0]))
         x = x+3
-        return array('l', x)
\ No newline at end of file
+        return array('l', x)
+
+
+# Numpy stages for whole frames, by name. A stage reads src and writes its result into dst,
+# both uint8 arrays of the same shape that view the Java side's memory.
+STAGES = {}
+
+
+def stage(name):
+    def register(fn):
+        STAGES[name] = fn
+        return fn
+    return register
+
+
+@stage("add3")
+def add3(src, dst):
+    np.add(src, 3, out=dst, casting="unsafe")
+
+
+@stage("invert")
+def invert(src, dst):
+    np.subtract(255, src, out=dst, casting="unsafe")
+
+
+@stage("threshold")
+def threshold(src, dst):
+    np.multiply(src > 127, 255, out=dst, casting="unsafe")
+
+
+def wrap(addr, rows, cols, channels, step):
+    # numpy view of rows x cols x channels bytes at addr, rows step bytes apart. No copy,
+    # the array is only valid while the Java Mat or ByteBuffer behind addr is.
+    buffer = (ctypes.c_uint8 * (step * rows)).from_address(addr)
+    if channels == 1:
+        return np.ndarray((rows, cols), np.uint8, buffer, 0, (step, 1))
+    return np.ndarray((rows, cols, channels), np.uint8, buffer, 0, (step, channels, 1))
+
+
+class FrameTransformer(static_proxy()):
+    @constructor([])
+    def __init__(self):
+        super(FrameTransformer, self).__init__()
+
+    @method(jvoid, [String, jlong, jint, jint, jint, jlong, jlong, jlong])
+    def process(self, name, src_addr, rows, cols, channels, src_step, dst_addr, dst_step):
+        src = wrap(src_addr, rows, cols, channels, src_step)
+        dst = wrap(dst_addr, rows, cols, channels, dst_step)
+        STAGES[name](src, dst)
@@ -0,0 +1,337 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Point;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Reruns the corner detection, and the foot measurement on the sheet, over saved photos
+// (the aaaa / aaaa_ files of the app) outside the phone:
+//
+//   ./gradlew :benchmark:batchDetect -Pinput=/path/to/photos -Poutput=results.tsv [-Pthreads=8]
+//
+// The input is a directory, searched recursively, or a zip archive of png/jpg files. Images
+// are spread over a thread pool, one image per core; OpenCV's own threading is switched off
+// so the cores are not oversubscribed. Each thread keeps its own CornorDetect workspace and
+// SheetMeasurer, both released when the thread ends.
+//
+// The output has one tab separated line per image, in completion order:
+//   name  status  x0 y0 x1 y1 x2 y2 x3 y3  foot length mm  foot width mm  ms
+// status is ok or none (no corners); missing values are "-". The output is also the
+// checkpoint: an interrupted run is resumed by starting it again with the same output,
+// images already in it are skipped and a torn last line is cut off. Images that could not
+// be read are only counted, not written, so the next run tries them again.
+public final class BatchDetect {
+
+    // Lines written between two flushes, the most a crash makes the next run redo
+    private static final int FLUSH_EVERY = 32;
+    private static final long REPORT_EVERY_MS = 5000;
+    private static final String HEADER = "#name\tstatus\tx0\ty0\tx1\ty1\tx2\ty2\tx3\ty3\tlength_mm\twidth_mm\tms";
+
+    // Created on first use by each worker thread, released by the thread as it ends
+    private static final ThreadLocal<SheetMeasurer> SHEET = new ThreadLocal<>();
+
+    // Where an image comes from, read on the worker thread
+    private interface Source {
+        Mat read(String name) throws IOException;
+    }
+
+    private final Writer mOutput;
+    private final int mTotal;
+    private final long mStartNanos = System.nanoTime();
+    private final AtomicInteger mDone = new AtomicInteger();
+    private final AtomicInteger mDetected = new AtomicInteger();
+    private final AtomicInteger mMeasured = new AtomicInteger();
+    private final AtomicInteger mUnreadable = new AtomicInteger();
+    // Guarded by mOutput
+    private int mUnflushed;
+    private long mLastReportNanos = mStartNanos;
+
+    private BatchDetect(Writer output, int total) {
+        mOutput = output;
+        mTotal = total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: BatchDetect <directory|zip> <output.tsv> [threads]");
+            System.exit(2);
+        }
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive: " + threads);
+        }
+
+        nu.pattern.OpenCV.loadLocally();
+        Core.setNumThreads(1);
+
+        ZipFile zip = null;
+        List<String> names;
+        Source source;
+        if (input.isDirectory()) {
+            names = listDirectory(input.toPath());
+            source = name -> Imgcodecs.imread(new File(input, name).getPath(), Imgcodecs.IMREAD_GRAYSCALE);
+        } else if (input.isFile()) {
+            ZipFile archive = new ZipFile(input);
+            zip = archive;
+            names = listZip(archive);
+            source = name -> decode(archive, archive.getEntry(name));
+        } else {
+            throw new IllegalArgumentException("No such directory or zip: " + input);
+        }
+
+        Set<String> done = resume(output);
+        List<String> todo = new ArrayList<>();
+        for (String name : names) {
+            if (!done.contains(key(name))) {
+                todo.add(name);
+            }
+        }
+        System.err.println(String.format(Locale.US, "%d images, %d done before, %d to go on %d threads",
+                names.size(), names.size() - todo.size(), todo.size(), threads));
+
+        boolean fresh = output.length() == 0;
+        try (Writer writer = new BufferedWriter(new FileWriter(output, true))) {
+            if (fresh) {
+                writer.write(HEADER + "\n");
+            }
+            BatchDetect batch = new BatchDetect(writer, todo.size());
+            // Keeps what is already done when the run is interrupted
+            Thread flush = new Thread(batch::flush);
+            Runtime.getRuntime().addShutdownHook(flush);
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads, BatchDetect::newWorker);
+            for (String name : todo) {
+                pool.execute(() -> batch.process(name, source));
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+            batch.flush();
+            Runtime.getRuntime().removeShutdownHook(flush);
+            System.err.println(batch.report());
+        } finally {
+            if (zip != null) {
+                zip.close();
+            }
+        }
+    }
+
+    private void process(String name, Source source) {
+        long start = System.nanoTime();
+        StringBuilder line = new StringBuilder(key(name)).append('\t');
+        Mat gray = null;
+        try {
+            gray = source.read(name);
+        } catch (IOException e) {
+            System.err.println(name + ": " + e.getMessage());
+        }
+        if (gray == null || gray.empty()) {
+            // Left out of the checkpoint, a later run reads it again
+            mUnreadable.incrementAndGet();
+            if (gray != null) {
+                gray.release();
+            }
+            write(null);
+            return;
+        }
+        ArrayList<Point> corners = CornorDetect.getCorner(gray);
+        SheetMeasurer.Result foot = null;
+        if (corners == null) {
+            line.append("none");
+            for (int i = 0; i < 8; i++) {
+                line.append("\t-");
+            }
+        } else {
+            mDetected.incrementAndGet();
+            line.append("ok");
+            for (Point corner : corners) {
+                line.append(String.format(Locale.US, "\t%.1f\t%.1f", corner.x, corner.y));
+            }
+            foot = sheet().measure(gray, corners);
+        }
+        if (foot == null) {
+            line.append("\t-\t-");
+        } else {
+            mMeasured.incrementAndGet();
+            line.append(String.format(Locale.US, "\t%.0f\t%.0f", foot.lengthMm, foot.widthMm));
+        }
+        line.append(String.format(Locale.US, "\t%.1f", (System.nanoTime() - start) / 1e6));
+        gray.release();
+        write(line.append('\n').toString());
+    }
+
+    private static SheetMeasurer sheet() {
+        SheetMeasurer sheet = SHEET.get();
+        if (sheet == null) {
+            sheet = new SheetMeasurer();
+            SHEET.set(sheet);
+        }
+        return sheet;
+    }
+
+    // Pool threads that free their native workspaces when the pool shuts them down
+    private static Thread newWorker(Runnable work) {
+        return new Thread(() -> {
+            try {
+                work.run();
+            } finally {
+                CornorDetect.releaseWorkspace();
+                SheetMeasurer sheet = SHEET.get();
+                if (sheet != null) {
+                    sheet.release();
+                    SHEET.remove();
+                }
+            }
+        });
+    }
+
+    // line is null for an image that is only counted
+    private void write(String line) {
+        synchronized (mOutput) {
+            if (line != null) {
+                try {
+                    mOutput.write(line);
+                    if (++mUnflushed >= FLUSH_EVERY) {
+                        mOutput.flush();
+                        mUnflushed = 0;
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Can not write the results", e);
+                }
+            }
+            mDone.incrementAndGet();
+            long now = System.nanoTime();
+            if (now - mLastReportNanos > REPORT_EVERY_MS * 1000000L) {
+                mLastReportNanos = now;
+                System.err.println(report());
+            }
+        }
+    }
+
+    private void flush() {
+        synchronized (mOutput) {
+            try {
+                mOutput.flush();
+                mUnflushed = 0;
+            } catch (IOException e) {
+                System.err.println("Can not flush the results: " + e.getMessage());
+            }
+        }
+    }
+
+    private String report() {
+        int done = mDone.get();
+        double seconds = (System.nanoTime() - mStartNanos) / 1e9;
+        return String.format(Locale.US,
+                "%d/%d images in %.1f s, %.1f images/s, corners on %d, foot on %d, unreadable %d (retried next run)",
+                done, mTotal, seconds, done / seconds, mDetected.get(), mMeasured.get(), mUnreadable.get());
+    }
+
+    // Names already in the output of an earlier run. A last line without its newline was
+    // torn by the interruption and is cut off, the image is done again.
+    private static Set<String> resume(File output) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!output.isFile() || output.length() == 0) {
+            return done;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            long end = file.length();
+            while (end > 0) {
+                file.seek(end - 1);
+                if (file.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            file.setLength(end);
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(output))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                done.add(tab < 0 ? line : line.substring(0, tab));
+            }
+        }
+        return done;
+    }
+
+    private static List<String> listDirectory(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(path -> Files.isRegularFile(path) && isImage(path.toString()))
+                    .map(path -> root.relativize(path).toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> listZip(ZipFile zip) {
+        List<String> names = new ArrayList<>();
+        for (ZipEntry entry : Collections.list(zip.entries())) {
+            if (!entry.isDirectory() && isImage(entry.getName())) {
+                names.add(entry.getName());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    // ZipFile can be read from several threads at once
+    private static Mat decode(ZipFile zip, ZipEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(0, entry.getSize()));
+        try (InputStream in = zip.getInputStream(entry)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        MatOfByte encoded = new MatOfByte(bytes.toByteArray());
+        Mat gray = Imgcodecs.imdecode(encoded, Imgcodecs.IMREAD_GRAYSCALE);
+        encoded.release();
+        return gray;
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
+    // Names go into a tab separated line
+    private static String key(String name) {
+        return name.replace('\t', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,185 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Input frames of the benchmarks, in the orientation CornorDetect sees them on the phone
+// (portrait gray, 480x640 for the usual ARCore CPU image).
+// Recorded frames are read from the directory in the benchmark.frames system property
+// (png/jpg, e.g. the aaaa.jpg files saved by the app); without it a fixed set of
+// synthetic frames is used, a bright sheet with a dark foot on a noisy floor.
+public final class BenchmarkFrames {
+
+    static final int WIDTH = 480;
+    static final int HEIGHT = 640;
+    static final int SYNTHETIC_FRAMES = 3;
+
+    // Memory layouts of YUV_420_888 seen on devices
+    public enum Layout { NV21, NV12, I420 }
+
+    // The planes of one camera image, laid out like android.media.Image hands them out
+    static final class YuvPlanes {
+        ByteBuffer y;
+        ByteBuffer u;
+        ByteBuffer v;
+        int yRowStride;
+        int uvRowStride;
+        int uvPixelStride;
+        int width;
+        int height;
+    }
+
+    static {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    private BenchmarkFrames() {
+    }
+
+    // Recorded frames come without ground truth, the synthetic ones have it
+    static boolean hasRecordedFrames() {
+        String dir = System.getProperty("benchmark.frames");
+        return dir != null && !dir.isEmpty();
+    }
+
+    static List<Mat> load() {
+        String dir = System.getProperty("benchmark.frames");
+        if (!hasRecordedFrames()) {
+            List<Mat> frames = new ArrayList<>();
+            for (int i = 0; i < SYNTHETIC_FRAMES; i++) {
+                frames.add(synthetic(i, null));
+            }
+            return frames;
+        }
+
+        File[] files = new File(dir).listFiles((d, name) -> {
+            String lower = name.toLowerCase();
+            return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+        });
+        if (files == null || files.length == 0) {
+            throw new IllegalArgumentException("No png/jpg frames in " + dir);
+        }
+        Arrays.sort(files);
+        List<Mat> frames = new ArrayList<>();
+        for (File file : files) {
+            Mat gray = Imgcodecs.imread(file.getPath(), Imgcodecs.IMREAD_GRAYSCALE);
+            if (gray.empty()) {
+                throw new IllegalArgumentException("Can not read " + file);
+            }
+            frames.add(gray);
+        }
+        return frames;
+    }
+
+    // A slightly rotated and skewed sheet with a foot on it. The sheet corners are
+    // written to corners (top left, top right, bottom right, bottom left) when it is not null.
+    static Mat synthetic(int seed, Point[] corners) {
+        Core.setRNGSeed(seed + 1);
+        Mat frame = new Mat(HEIGHT, WIDTH, CvType.CV_8UC1);
+        Core.randn(frame, 90, 12);
+
+        double shift = 12 * seed;
+        Point[] sheet = {
+                new Point(95 + shift, 120 + shift / 2),
+                new Point(390 - shift / 3, 105 + shift),
+                new Point(405 - shift, 540 - shift / 2),
+                new Point(80 + shift / 2, 555 - shift / 3),
+        };
+        Imgproc.fillConvexPoly(frame, new MatOfPoint(sheet), new Scalar(225));
+
+        Point heel = new Point(240 + shift / 2, 380);
+        Imgproc.ellipse(frame, new RotatedRect(heel, new Size(110, 250), 8 + seed * 3), new Scalar(60), -1);
+
+        Imgproc.GaussianBlur(frame, frame, new Size(3, 3), 0);
+        if (corners != null) {
+            System.arraycopy(sheet, 0, corners, 0, 4);
+        }
+        return frame;
+    }
+
+    // Mean distance from every reference corner to the closest detected corner.
+    // getPoint() returns the corners in no fixed order, so they are matched by distance.
+    static double cornerError(List<Point> detected, List<Point> reference) {
+        double sum = 0;
+        for (Point expected : reference) {
+            double best = Double.MAX_VALUE;
+            for (Point found : detected) {
+                best = Math.min(best, Math.hypot(found.x - expected.x, found.y - expected.y));
+            }
+            sum += best;
+        }
+        return sum / reference.size();
+    }
+
+    // Turns a portrait gray frame back into the landscape camera image the phone would
+    // deliver, with padded rows (the last row without padding, like on devices) and
+    // a flat chroma pattern.
+    static YuvPlanes cameraPlanes(Mat gray, Layout layout) {
+        Mat sensor = new Mat();
+        Core.rotate(gray, sensor, Core.ROTATE_90_COUNTERCLOCKWISE);
+
+        YuvPlanes planes = new YuvPlanes();
+        planes.width = sensor.cols();
+        planes.height = sensor.rows();
+        planes.yRowStride = planes.width + 64;
+        planes.y = ByteBuffer.allocateDirect(planes.yRowStride * (planes.height - 1) + planes.width);
+        byte[] row = new byte[planes.width];
+        for (int r = 0; r < planes.height; r++) {
+            sensor.get(r, 0, row);
+            planes.y.position(r * planes.yRowStride);
+            planes.y.put(row);
+        }
+        planes.y.position(0);
+        sensor.release();
+
+        int chromaWidth = planes.width / 2;
+        int chromaHeight = planes.height / 2;
+        if (layout == Layout.I420) {
+            planes.uvPixelStride = 1;
+            planes.uvRowStride = chromaWidth + 32;
+            planes.u = chromaPlane(chromaWidth, chromaHeight, planes.uvRowStride, 1, 100);
+            planes.v = chromaPlane(chromaWidth, chromaHeight, planes.uvRowStride, 1, 150);
+        } else {
+            // One interleaved buffer, the two planes are views of it one byte apart
+            planes.uvPixelStride = 2;
+            planes.uvRowStride = planes.yRowStride;
+            ByteBuffer interleaved = chromaPlane(chromaWidth * 2, chromaHeight, planes.uvRowStride, 1, 128);
+            ByteBuffer first = interleaved.duplicate();
+            first.limit(interleaved.capacity() - 1);
+            ByteBuffer second = interleaved.duplicate();
+            second.position(1);
+            if (layout == Layout.NV21) {
+                planes.v = first.slice();
+                planes.u = second.slice();
+            } else {
+                planes.u = first.slice();
+                planes.v = second.slice();
+            }
+        }
+        return planes;
+    }
+
+    private static ByteBuffer chromaPlane(int width, int height, int rowStride, int pixelStride, int base) {
+        ByteBuffer plane = ByteBuffer.allocateDirect(rowStride * (height - 1) + (width - 1) * pixelStride + 1);
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                plane.put(r * rowStride + c * pixelStride, (byte) (base + (r + c) % 16));
+            }
+        }
+        return plane;
+    }
+}
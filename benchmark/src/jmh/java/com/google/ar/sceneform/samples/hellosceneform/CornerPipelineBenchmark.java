@@ -0,0 +1,161 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One benchmark per CornorDetect stage, each on the buffers the previous stage left in
+// the workspace, plus the whole pipeline. Throughput and the latency distribution
+// (SampleTime) are reported for every stage, the gc profiler adds the allocation rate.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CornerPipelineBenchmark {
+
+    // Index into the recorded (or synthetic) frames
+    @Param({"0", "1", "2"})
+    public int frame;
+
+    private Mat gray;
+    private BenchmarkFrames.YuvPlanes camera;
+    private Mat rotated;
+    private CornerWorkspace ws;
+    private CornerDetectOptions defaults;
+    private CornerDetectOptions halfResolution;
+    private CornerDetectOptions instrumented;
+    private TiledCornerDetector tiled;
+    private CornerTracker tracker;
+    private OpticalFlowTracker flow;
+    private FrameQualityGate gate;
+    private int count;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Mat> frames = BenchmarkFrames.load();
+        gray = frames.get(frame % frames.size());
+        camera = BenchmarkFrames.cameraPlanes(gray, BenchmarkFrames.Layout.NV21);
+        rotated = new Mat();
+        defaults = CornerDetectOptions.defaults();
+        halfResolution = CornerDetectOptions.defaults().setPyramidLevels(1);
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.setEnabled(true);
+        instrumented = CornerDetectOptions.defaults().setMetrics(metrics);
+        tiled = new TiledCornerDetector(Runtime.getRuntime().availableProcessors());
+        tracker = new CornerTracker(defaults);
+        flow = new OpticalFlowTracker();
+        gate = new FrameQualityGate();
+
+        // Run every stage once, so each benchmark finds its input in the workspace
+        ws = new CornerWorkspace();
+        ws.ensureSize(gray.rows(), gray.cols());
+        CornorDetect.edges(CornorDetect.blur(gray, ws, Prefilter.DEFAULT), ws);
+        CornorDetect.harris(ws);
+        count = CornorDetect.extract(ws);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ws.release();
+        rotated.release();
+        tiled.release();
+        tracker.release();
+        flow.release();
+        gate.release();
+    }
+
+    // Camera Y plane to the upright gray input, as UtilsBitmap.imageToGray() does it
+    @Benchmark
+    public Mat conversion() {
+        Mat y = YuvConverter.wrap(camera.y, camera.height, camera.width, camera.yRowStride, 1);
+        Core.rotate(y, rotated, Core.ROTATE_90_CLOCKWISE);
+        y.release();
+        return rotated;
+    }
+
+    // The check in front of the pipeline, has to stay far below it
+    @Benchmark
+    public FrameQualityGate.Verdict qualityGate() {
+        return gate.check(gray);
+    }
+
+    @Benchmark
+    public Mat bilateral() {
+        return CornorDetect.blur(gray, ws, Prefilter.DEFAULT);
+    }
+
+    @Benchmark
+    public Mat canny() {
+        CornorDetect.edges(ws.blur, ws);
+        return ws.canny;
+    }
+
+    @Benchmark
+    public Mat harris() {
+        CornorDetect.harris(ws);
+        return ws.harris;
+    }
+
+    @Benchmark
+    public int extraction() {
+        return CornorDetect.extract(ws);
+    }
+
+    @Benchmark
+    public ArrayList<Point> getPoint() {
+        return CornorDetect.getPoint(ws, count, gray.cols(), gray.rows());
+    }
+
+    @Benchmark
+    public ArrayList<Point> pipeline() {
+        return CornorDetect.getCorner(gray, ws, defaults);
+    }
+
+    // The pipeline with every stage timed, against pipeline() for the cost of the metrics
+    @Benchmark
+    public ArrayList<Point> pipelineInstrumented() {
+        return CornorDetect.getCorner(gray, ws, instrumented);
+    }
+
+    @Benchmark
+    public ArrayList<Point> pipelineHalfResolution() {
+        return CornorDetect.getCorner(gray, ws, halfResolution);
+    }
+
+    // The pipeline in horizontal strips on all cores
+    @Benchmark
+    public ArrayList<Point> pipelineTiled() {
+        return tiled.getCorner(gray, defaults);
+    }
+
+    // A frame after the lock: the four tracker windows instead of the whole frame
+    @Benchmark
+    public ArrayList<Point> tracked() {
+        if (!tracker.isLocked()) {
+            tracker.lock(gray, CornorDetect.getCorner(gray, ws, defaults));
+        }
+        return tracker.track(gray, 0, 0);
+    }
+
+    // A frame after the lock: Lucas-Kanade forward and back on the corners and support points
+    @Benchmark
+    public ArrayList<Point> opticalFlow() {
+        if (!flow.isLocked()) {
+            flow.lock(gray, CornorDetect.getCorner(gray, ws, defaults));
+        }
+        return flow.track(gray, 0, 0);
+    }
+}
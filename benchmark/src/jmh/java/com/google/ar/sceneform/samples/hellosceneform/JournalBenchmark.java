@@ -0,0 +1,65 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Cost of journaling one measured point on the measuring thread, group commit included
+// (it runs on the journal's writer thread while the benchmark keeps appending).
+// Full segments are deleted as the benchmark goes, it would fill the disk otherwise.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JournalBenchmark {
+
+    private File dir;
+    private MeasurementJournal journal;
+    private long appended;
+    private final float[] from = {0.1f, 0.2f, -0.5f, 0, 0, 0, 1};
+    private final float[] to = {0.3f, 0.2f, -0.4f, 0, 0, 0, 1};
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal").toFile();
+        journal = MeasurementJournal.open(dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        deleteSegments(true);
+        dir.delete();
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        journal.append(System.currentTimeMillis(), MeasurementJournal.MODE_LIST, from, to, 0.22f);
+        if (++appended % MeasurementJournal.SEGMENT_RECORDS == 0) {
+            deleteSegments(false);
+        }
+    }
+
+    // All segments, or all but the one being written (the newest)
+    private void deleteSegments(boolean all) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (int i = 0; i < (all ? files.length : files.length - 1); i++) {
+            files[i].delete();
+        }
+    }
+}
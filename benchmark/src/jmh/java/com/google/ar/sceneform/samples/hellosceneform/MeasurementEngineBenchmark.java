@@ -0,0 +1,54 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Cost of a whole measuring session: every point with its length, area and extents update,
+// then the readout the activity shows. Should grow linearly with the number of points.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MeasurementEngineBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int points;
+
+    private final MeasurementEngine engine = new MeasurementEngine();
+    private final float[] extents = new float[3];
+    private float[] xyz;
+
+    @Setup
+    public void setUp() {
+        // A walk on the floor plane, one point every few centimeters
+        Random random = new Random(42);
+        xyz = new float[3 * points];
+        float x = 0;
+        float z = 0;
+        for (int i = 0; i < points; i++) {
+            x += random.nextFloat() * 0.1f - 0.05f;
+            z += random.nextFloat() * 0.1f - 0.05f;
+            xyz[3 * i] = x;
+            xyz[3 * i + 1] = -1.2f;
+            xyz[3 * i + 2] = z;
+        }
+    }
+
+    @Benchmark
+    public float session() {
+        engine.clear();
+        for (int i = 0; i < points; i++) {
+            engine.addPoint(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+        }
+        engine.getExtents(extents);
+        return engine.getTotalLength() + engine.getArea() + extents[0];
+    }
+}
@@ -0,0 +1,103 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Detection quality of every Prefilter candidate on the benchmark frames:
+//
+//   ./gradlew :benchmark:prefilterAccuracy [-Pframes=/path/to/recorded/frames]
+//
+// Every candidate is compared to the default bilateral filter, i.e. to what the app
+// detects today: on how many frames it still finds the corners, how many of them stay
+// the same and how far they move on average. Synthetic frames are also scored against
+// their ground truth corners, recorded frames have none.
+public final class PrefilterAccuracy {
+
+    // A detection is the same as the default one when its corners are this close on average
+    private static final double SAME_DISTANCE = 5;
+    private static final int TIMED_RUNS = 10;
+
+    static final Map<String, Prefilter> CANDIDATES = new LinkedHashMap<>();
+
+    static {
+        CANDIDATES.put("bilateral10", Prefilter.DEFAULT);
+        CANDIDATES.put("bilateral5", Prefilter.bilateral(5));
+        CANDIDATES.put("gaussian5", Prefilter.gaussian(5));
+        CANDIDATES.put("median5", Prefilter.medianDownscaled(5, 2));
+        CANDIDATES.put("box5", Prefilter.boxDownscaled(5, 2));
+        CANDIDATES.put("none", Prefilter.none());
+    }
+
+    private PrefilterAccuracy() {
+    }
+
+    public static void main(String[] args) {
+        List<Mat> frames = new ArrayList<>();
+        // Ground truth corners per frame, only known for the synthetic frames
+        List<List<Point>> truths = new ArrayList<>();
+        if (BenchmarkFrames.hasRecordedFrames()) {
+            frames.addAll(BenchmarkFrames.load());
+        } else {
+            for (int i = 0; i < BenchmarkFrames.SYNTHETIC_FRAMES; i++) {
+                Point[] corners = new Point[4];
+                frames.add(BenchmarkFrames.synthetic(i, corners));
+                truths.add(Arrays.asList(corners));
+            }
+        }
+        // What the app detects today
+        List<ArrayList<Point>> defaults = new ArrayList<>();
+        for (Mat frame : frames) {
+            defaults.add(CornorDetect.getCorner(frame));
+        }
+
+        System.out.println(String.format("%-16s %9s %9s %10s %10s %9s",
+                "prefilter", "detected", "same", "drift px", "truth px", "ms"));
+        CornerWorkspace ws = new CornerWorkspace();
+        for (Map.Entry<String, Prefilter> candidate : CANDIDATES.entrySet()) {
+            CornerDetectOptions options = CornerDetectOptions.defaults().setPrefilter(candidate.getValue());
+            int detected = 0;
+            // Detections agreeing with the default filter, and how far they move on average
+            int same = 0;
+            int compared = 0;
+            double driftSum = 0;
+            double truthSum = 0;
+            long nanos = 0;
+            for (int f = 0; f < frames.size(); f++) {
+                // First run warms the workspace up, only the following ones are timed
+                ArrayList<Point> corners = CornorDetect.getCorner(frames.get(f), ws, options);
+                long start = System.nanoTime();
+                for (int r = 0; r < TIMED_RUNS; r++) {
+                    CornorDetect.getCorner(frames.get(f), ws, options);
+                }
+                nanos += System.nanoTime() - start;
+                if (corners == null) {
+                    continue;
+                }
+                detected++;
+                if (defaults.get(f) != null) {
+                    double drift = BenchmarkFrames.cornerError(corners, defaults.get(f));
+                    if (drift < SAME_DISTANCE) {
+                        same++;
+                    }
+                    driftSum += drift;
+                    compared++;
+                }
+                if (!truths.isEmpty()) {
+                    truthSum += BenchmarkFrames.cornerError(corners, truths.get(f));
+                }
+            }
+            System.out.println(String.format("%-16s %5d/%-3d %5d/%-3d %10.2f %10.2f %9.2f",
+                    candidate.getValue(), detected, frames.size(), same, frames.size(),
+                    compared == 0 ? Double.NaN : driftSum / compared,
+                    detected == 0 || truths.isEmpty() ? Double.NaN : truthSum / detected,
+                    nanos / 1e6 / (frames.size() * TIMED_RUNS)));
+        }
+        ws.release();
+    }
+}
@@ -0,0 +1,56 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Cost of every Prefilter candidate, alone and as part of the whole detection.
+// PrefilterAccuracy tells what each of them does to the detected corners.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrefilterBenchmark {
+
+    // Keys of PrefilterAccuracy.CANDIDATES
+    @Param({"bilateral10", "bilateral5", "gaussian5", "median5", "box5", "none"})
+    public String prefilter;
+
+    private Mat gray;
+    private CornerWorkspace ws;
+    private CornerDetectOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        gray = BenchmarkFrames.load().get(0);
+        options = CornerDetectOptions.defaults().setPrefilter(PrefilterAccuracy.CANDIDATES.get(prefilter));
+        ws = new CornerWorkspace();
+        ws.ensureSize(gray.rows(), gray.cols());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ws.release();
+    }
+
+    @Benchmark
+    public Mat filter() {
+        return CornorDetect.blur(gray, ws, options.getPrefilter());
+    }
+
+    @Benchmark
+    public ArrayList<Point> pipeline() {
+        return CornorDetect.getCorner(gray, ws, options);
+    }
+}
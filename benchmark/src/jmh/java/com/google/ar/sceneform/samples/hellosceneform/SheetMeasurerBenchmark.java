@@ -0,0 +1,55 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cost of measuring the foot from the sheet corners, homography, warp and segmentation.
+// Runs on the synthetic frames only, they come with the true corners.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SheetMeasurerBenchmark {
+
+    @Param({"0", "1", "2"})
+    public int frame;
+
+    private Mat gray;
+    private List<Point> corners;
+    private SheetMeasurer measurer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Point[] sheet = new Point[4];
+        gray = BenchmarkFrames.synthetic(frame, sheet);
+        corners = Arrays.asList(sheet);
+        measurer = new SheetMeasurer();
+        if (measurer.measure(gray, corners) == null) {
+            throw new IllegalStateException("No foot found on synthetic frame " + frame);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        measurer.release();
+        gray.release();
+    }
+
+    @Benchmark
+    public SheetMeasurer.Result measure() {
+        return measurer.measure(gray, corners);
+    }
+}
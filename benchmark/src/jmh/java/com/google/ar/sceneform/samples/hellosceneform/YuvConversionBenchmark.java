@@ -0,0 +1,53 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+// The color path of UtilsBitmap (imageToRgba() and the rotation for saving) on synthetic
+// camera planes in each YUV_420_888 layout. NV21 and NV12 take the cvtColorTwoPlane fast
+// path, I420 is gathered into planar I420 first.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class YuvConversionBenchmark {
+
+    @Param({"NV21", "NV12", "I420"})
+    public BenchmarkFrames.Layout layout;
+
+    private BenchmarkFrames.YuvPlanes planes;
+    private YuvConverter converter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        planes = BenchmarkFrames.cameraPlanes(BenchmarkFrames.load().get(0), layout);
+        converter = new YuvConverter();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        converter.release();
+    }
+
+    @Benchmark
+    public Mat toRgba() {
+        return converter.toRgba(planes.y, planes.yRowStride, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, planes.width, planes.height);
+    }
+
+    @Benchmark
+    public Mat toRgbaRotated() {
+        return converter.rotate(toRgba(), Core.ROTATE_90_CLOCKWISE);
+    }
+}
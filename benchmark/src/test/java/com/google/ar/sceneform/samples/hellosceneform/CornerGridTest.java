@@ -0,0 +1,96 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// CornerGrid against a scan over all candidates
+public class CornerGridTest {
+
+    @Test
+    public void farthestMatchesLinearScan() {
+        Random random = new Random(5);
+        CornerGrid grid = new CornerGrid();
+        for (int round = 0; round < 300; round++) {
+            int width = 1 + random.nextInt(200);
+            int height = 1 + random.nextInt(200);
+            int count = 1 + random.nextInt(400);
+            int[] xy = CornorDetectTest.randomCandidates(random, count, width, height);
+            grid.build(xy, count, width, height);
+
+            for (int query = 0; query < 5; query++) {
+                int px = random.nextInt(width);
+                int py = random.nextInt(height);
+                assertEquals("round " + round, farthest(xy, count, new boolean[count], px, py), grid.farthest(px, py));
+            }
+        }
+    }
+
+    @Test
+    public void removeWithinMatchesLinearScan() {
+        Random random = new Random(7);
+        CornerGrid grid = new CornerGrid();
+        for (int round = 0; round < 300; round++) {
+            int width = 1 + random.nextInt(200);
+            int height = 1 + random.nextInt(200);
+            int count = 1 + random.nextInt(400);
+            int[] xy = CornorDetectTest.randomCandidates(random, count, width, height);
+            boolean[] removed = new boolean[count];
+            grid.build(xy, count, width, height);
+
+            int px = random.nextInt(width);
+            int py = random.nextInt(height);
+            for (int step = 0; step < 4; step++) {
+                // Radii from inside one cell to beyond the image
+                double radiusSquared = Math.pow(random.nextDouble() * 1.5 * Math.max(width, height), 2);
+                int cx = random.nextInt(width);
+                int cy = random.nextInt(height);
+                grid.removeWithin(cx, cy, radiusSquared);
+                for (int i = 0; i < count; i++) {
+                    if (distanceSquared(xy, i, cx, cy) < radiusSquared) {
+                        removed[i] = true;
+                    }
+                }
+                assertEquals("round " + round, farthest(xy, count, removed, px, py), grid.farthest(px, py));
+            }
+        }
+    }
+
+    // The arrays are kept between builds, a smaller set must not see the bigger one before it
+    @Test
+    public void rebuildForgetsEarlierCandidates() {
+        CornerGrid grid = new CornerGrid();
+        grid.build(new int[]{0, 0, 199, 199, 50, 50}, 3, 200, 200);
+        grid.removeWithin(0, 0, 100);
+
+        grid.build(new int[]{0, 0, 10, 10}, 2, 20, 20);
+
+        assertEquals(2, grid.size());
+        assertEquals(1, grid.farthest(0, 0));
+        assertEquals(0, grid.farthest(10, 10));
+        grid.removeWithin(10, 10, 1);
+        assertEquals(-1, grid.farthest(0, 0));
+    }
+
+    // Ties go to the lowest index
+    private static int farthest(int[] xy, int count, boolean[] removed, int px, int py) {
+        long best = 0;
+        int bestIndex = -1;
+        for (int i = 0; i < count; i++) {
+            long d = distanceSquared(xy, i, px, py);
+            if (!removed[i] && d > best) {
+                best = d;
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    private static long distanceSquared(int[] xy, int i, int px, int py) {
+        long dx = xy[2 * i] - px;
+        long dy = xy[2 * i + 1] - py;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,266 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CornorDetectTest {
+
+    // getPoint() takes the first candidate in row-major order, which lies on the edge next to the corner
+    private static final double CORNER_TOLERANCE = 6;
+
+    private CornerWorkspace mWorkspace;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Before
+    public void setUp() {
+        mWorkspace = new CornerWorkspace();
+    }
+
+    @After
+    public void tearDown() {
+        mWorkspace.release();
+        CornorDetect.releaseWorkspace();
+    }
+
+    @Test
+    public void getNonZeroListsMaskPixelsInRowMajorOrder() {
+        int rows = 40;
+        int cols = 30;
+        mWorkspace.ensureSize(rows, cols);
+        mWorkspace.mask.create(rows, cols, CvType.CV_8UC1);
+        mWorkspace.mask.setTo(new Scalar(0));
+        Random random = new Random(3);
+        List<int[]> expected = new ArrayList<>();
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                if (random.nextInt(5) == 0) {
+                    mWorkspace.mask.put(y, x, 1 + random.nextInt(255));
+                    expected.add(new int[]{x, y});
+                }
+            }
+        }
+
+        int count = CornorDetect.getNonZero(mWorkspace);
+
+        assertEquals(expected.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected.get(i)[0], mWorkspace.xy[2 * i]);
+            assertEquals(expected.get(i)[1], mWorkspace.xy[2 * i + 1]);
+        }
+    }
+
+    @Test
+    public void extractKeepsHarrisResponsesAboveThreshold() {
+        int rows = 8;
+        int cols = 8;
+        mWorkspace.ensureSize(rows, cols);
+        mWorkspace.harris.create(rows, cols, CvType.CV_32FC1);
+        mWorkspace.harris.setTo(new Scalar(-0.5));
+        mWorkspace.harris.put(1, 2, 0.00002f);
+        mWorkspace.harris.put(3, 0, 0.00001f);
+        mWorkspace.harris.put(6, 7, 1f);
+
+        assertEquals(2, CornorDetect.extract(mWorkspace));
+        assertArrayPrefix(new int[]{2, 1, 7, 6}, mWorkspace.xy);
+    }
+
+    // The grid must pick exactly what the linear scan of the original getPoint() picked
+    @Test
+    public void getPointMatchesLinearScan() {
+        Random random = new Random(11);
+        int width = 120;
+        int height = 160;
+        for (int round = 0; round < 200; round++) {
+            int count = 5 + random.nextInt(300);
+            int[] xy = randomCandidates(random, count, width, height);
+            mWorkspace.ensureCandidates(count);
+            System.arraycopy(xy, 0, mWorkspace.xy, 0, xy.length);
+
+            assertEquals("round " + round, linearScan(xy, count),
+                    CornorDetect.getPoint(mWorkspace, count, width, height));
+        }
+    }
+
+    @Test
+    public void getPointReturnsNullWhenCandidatesRunOut() {
+        // Two clusters only, the third pick finds nothing left
+        int[] xy = {10, 10, 11, 10, 10, 11, 90, 90, 91, 90, 90, 91};
+        mWorkspace.ensureCandidates(6);
+        System.arraycopy(xy, 0, mWorkspace.xy, 0, xy.length);
+
+        assertNull(CornorDetect.getPoint(mWorkspace, 6, 100, 100));
+    }
+
+    @Test
+    public void getCornerFindsSheetCorners() {
+        Point[] sheet = {new Point(180, 60), new Point(459, 60), new Point(459, 420), new Point(180, 420)};
+        Mat gray = sheet(640, 480, sheet);
+
+        ArrayList<Point> corners = CornorDetect.getCorner(gray, mWorkspace, CornerDetectOptions.defaults());
+
+        assertNotNull(corners);
+        assertEquals(4, corners.size());
+        assertMatches(sheet, corners, CORNER_TOLERANCE);
+        gray.release();
+    }
+
+    @Test
+    public void getCornerReturnsNullWithoutCandidates() {
+        Mat gray = new Mat(480, 640, CvType.CV_8UC1, new Scalar(128));
+        assertNull(CornorDetect.getCorner(gray, mWorkspace, CornerDetectOptions.defaults()));
+        gray.release();
+    }
+
+    // The buffers are resized for every resolution, leftovers of an earlier frame must not leak in
+    @Test
+    public void reusedWorkspaceGivesSameCornersAsFreshOne() {
+        Mat small = sheet(640, 480, new Point(180, 60), new Point(459, 60), new Point(459, 420), new Point(180, 420));
+        Mat large = sheet(1280, 720, new Point(100, 150), new Point(600, 150), new Point(600, 900), new Point(100, 900));
+        CornerDetectOptions options = CornerDetectOptions.defaults();
+
+        List<ArrayList<Point>> fresh = new ArrayList<>();
+        for (Mat gray : new Mat[]{small, large}) {
+            CornerWorkspace ws = new CornerWorkspace();
+            fresh.add(CornorDetect.getCorner(gray, ws, options));
+            ws.release();
+        }
+
+        for (int round = 0; round < 2; round++) {
+            assertEquals(fresh.get(0), CornorDetect.getCorner(small, mWorkspace, options));
+            assertEquals(fresh.get(1), CornorDetect.getCorner(large, mWorkspace, options));
+        }
+        assertEquals(fresh.get(0), CornorDetect.getCorner(small, options));
+        small.release();
+        large.release();
+    }
+
+    @Test
+    public void refineCornersMovesLevelCornersOntoFullImage() {
+        Point[] sheet = {new Point(100, 150), new Point(379, 150), new Point(379, 549), new Point(100, 549)};
+        Mat gray = sheet(640, 480, sheet);
+        // The pixel of the corner on the first pyramid level
+        ArrayList<Point> points = new ArrayList<>();
+        for (Point corner : sheet) {
+            points.add(new Point(Math.floor(corner.x / 2), Math.floor(corner.y / 2)));
+        }
+
+        CornorDetect.refineCorners(gray, points, 2, mWorkspace);
+
+        // cornerSubPix puts the corner on the pixel border, half a pixel off the first sheet pixel
+        assertMatches(sheet, points, 1);
+        gray.release();
+    }
+
+    // Bright sheet with the given corners on a dark floor, rows x cols
+    private static Mat sheet(int rows, int cols, Point... corners) {
+        Mat gray = new Mat(rows, cols, CvType.CV_8UC1, new Scalar(70));
+        Imgproc.rectangle(gray, corners[0], corners[2], new Scalar(225), -1);
+        return gray;
+    }
+
+    private static void assertMatches(Point[] expected, List<Point> actual, double tolerance) {
+        for (Point corner : expected) {
+            double best = Double.MAX_VALUE;
+            for (Point found : actual) {
+                best = Math.min(best, Math.hypot(found.x - corner.x, found.y - corner.y));
+            }
+            assertTrue("No corner near " + corner + " in " + actual, best <= tolerance);
+        }
+    }
+
+    private static void assertArrayPrefix(int[] expected, int[] actual) {
+        assertTrue(Arrays.toString(actual), actual.length >= expected.length);
+        assertEquals(Arrays.toString(expected), Arrays.toString(Arrays.copyOf(actual, expected.length)));
+    }
+
+    // Row-major like the mask, duplicates allowed
+    static int[] randomCandidates(Random random, int count, int width, int height) {
+        int[] index = new int[count];
+        for (int i = 0; i < count; i++) {
+            index[i] = random.nextInt(width * height);
+        }
+        Arrays.sort(index);
+        int[] xy = new int[2 * count];
+        for (int i = 0; i < count; i++) {
+            xy[2 * i] = index[i] % width;
+            xy[2 * i + 1] = index[i] / width;
+        }
+        return xy;
+    }
+
+    // getPoint() as it was before the grid: every query scans all candidates
+    private static ArrayList<Point> linearScan(int[] xy, int count) {
+        boolean[] removed = new boolean[count];
+        int x0 = xy[0];
+        int y0 = xy[1];
+        int z1 = farthest(xy, count, removed, x0, y0);
+        if (z1 < 0) {
+            return null;
+        }
+        double t2 = distanceSquared(xy, z1, x0, y0) / 16.0;
+        removeWithin(xy, count, removed, z1, t2);
+        int z2 = farthest(xy, count, removed, x0, y0);
+        if (z2 < 0) {
+            return null;
+        }
+        removeWithin(xy, count, removed, z2, t2);
+        int z3 = farthest(xy, count, removed, x0, y0);
+        if (z3 < 0) {
+            return null;
+        }
+        ArrayList<Point> results = new ArrayList<>();
+        results.add(new Point(x0, y0));
+        for (int z : new int[]{z1, z2, z3}) {
+            results.add(new Point(xy[2 * z], xy[2 * z + 1]));
+        }
+        return results;
+    }
+
+    private static int farthest(int[] xy, int count, boolean[] removed, int px, int py) {
+        long best = 0;
+        int bestIndex = -1;
+        for (int i = 0; i < count; i++) {
+            long d = distanceSquared(xy, i, px, py);
+            if (!removed[i] && d > best) {
+                best = d;
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    private static void removeWithin(int[] xy, int count, boolean[] removed, int z, double radiusSquared) {
+        for (int i = 0; i < count; i++) {
+            if (distanceSquared(xy, i, xy[2 * z], xy[2 * z + 1]) < radiusSquared) {
+                removed[i] = true;
+            }
+        }
+    }
+
+    private static long distanceSquared(int[] xy, int i, int px, int py) {
+        long dx = xy[2 * i] - px;
+        long dy = xy[2 * i + 1] - py;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,144 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameQualityGateTest {
+
+    private static final Point[] CORNERS = {
+            new Point(130, 110), new Point(360, 120), new Point(410, 560), new Point(70, 545)};
+
+    private FrameQualityGate mGate;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Before
+    public void setUp() {
+        mGate = new FrameQualityGate();
+    }
+
+    @After
+    public void tearDown() {
+        mGate.release();
+    }
+
+    @Test
+    public void sharpFrameIsAccepted() {
+        Mat gray = sheet(2);
+        assertEquals(FrameQualityGate.Verdict.OK, mGate.check(gray));
+        gray.release();
+    }
+
+    // A white sheet filling nearly the whole frame, with the sensor clipping on it
+    @Test
+    public void brightSheetFillingFrameIsAccepted() {
+        Point[] corners = {new Point(10, 5), new Point(470, 5), new Point(470, 635), new Point(10, 635)};
+        Mat gray = SheetFrames.render(640, 480, corners, SheetMeasurer.A4_WIDTH_MM, SheetMeasurer.A4_HEIGHT_MM,
+                2, 1, Collections.singletonList(SheetFrames.foot(105, 150, 240, 95, 0, 0)));
+        Mat bright = new Mat();
+        gray.convertTo(bright, CvType.CV_8UC1, 1, 255 - SheetFrames.SHEET);
+
+        assertEquals(FrameQualityGate.Verdict.OK, mGate.check(bright));
+        gray.release();
+        bright.release();
+    }
+
+    @Test
+    public void blurredFrameIsRejected() {
+        Mat gray = sheet(2);
+        Imgproc.GaussianBlur(gray, gray, new Size(0, 0), 3);
+        assertEquals(FrameQualityGate.Verdict.BLURRED, mGate.check(gray));
+        gray.release();
+    }
+
+    @Test
+    public void darkFrameIsRejected() {
+        Mat gray = sheet(2);
+        gray.convertTo(gray, CvType.CV_8UC1, 0.1, 0);
+        assertEquals(FrameQualityGate.Verdict.TOO_DARK, mGate.check(gray));
+        gray.release();
+    }
+
+    @Test
+    public void saturatedFrameIsRejected() {
+        Mat gray = new Mat(640, 480, CvType.CV_8UC1, new Scalar(255));
+        assertEquals(FrameQualityGate.Verdict.TOO_BRIGHT, mGate.check(gray));
+        gray.release();
+    }
+
+    @Test
+    public void thresholdsAreConfigurable() {
+        Mat gray = sheet(2);
+        assertEquals(FrameQualityGate.Verdict.OK, mGate.check(gray));
+        assertEquals(FrameQualityGate.Verdict.BLURRED, mGate.setMinSharpness(1e6).check(gray));
+        mGate.setMinSharpness(FrameQualityGate.PLACEHOLDER_MIN_SHARPNESS);
+        assertEquals(FrameQualityGate.Verdict.TOO_BRIGHT, mGate.setMeanRange(0, 100).check(gray));
+        assertEquals(FrameQualityGate.Verdict.TOO_DARK, mGate.setMeanRange(200, 255).check(gray));
+        gray.release();
+    }
+
+    // Half black, half white: the mean is fine, the clipped share is not
+    @Test
+    public void clippedShareIsRejected() {
+        Mat gray = new Mat(640, 480, CvType.CV_8UC1, new Scalar(0));
+        gray.rowRange(320, 640).setTo(new Scalar(255));
+        assertEquals(FrameQualityGate.Verdict.OK, mGate.setMinSharpness(0).check(gray));
+        assertEquals(FrameQualityGate.Verdict.TOO_DARK, mGate.setMaxClipped(0.4).check(gray));
+        gray.rowRange(0, 100).setTo(new Scalar(128));
+        assertEquals(FrameQualityGate.Verdict.TOO_BRIGHT, mGate.check(gray));
+        gray.release();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSharpnessIsRejected() {
+        mGate.setMinSharpness(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invertedMeanRangeIsRejected() {
+        mGate.setMeanRange(200, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void clippedShareAboveOneIsRejected() {
+        mGate.setMaxClipped(1.5);
+    }
+
+    @Test
+    public void verdictsAreCounted() {
+        Mat gray = sheet(2);
+        mGate.check(gray);
+        mGate.check(gray);
+        Imgproc.GaussianBlur(gray, gray, new Size(0, 0), 3);
+        mGate.check(gray);
+        assertTrue(mGate.acceptTracking(true));
+        assertTrue(!mGate.acceptTracking(false));
+
+        assertEquals(2, mGate.getCount(FrameQualityGate.Verdict.OK));
+        assertEquals(1, mGate.getCount(FrameQualityGate.Verdict.BLURRED));
+        assertEquals(1, mGate.getCount(FrameQualityGate.Verdict.NOT_TRACKING));
+        assertEquals(2, mGate.getRejected());
+        gray.release();
+    }
+
+    private static Mat sheet(double noise) {
+        return SheetFrames.render(640, 480, CORNERS, SheetMeasurer.A4_WIDTH_MM, SheetMeasurer.A4_HEIGHT_MM,
+                noise, 7, Collections.singletonList(SheetFrames.foot(105, 150, 240, 95, 0, 0)));
+    }
+}
@@ -0,0 +1,152 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertTrue;
+
+// Latency of the detection on a labelled frame set (see GoldenSet) against <set>.latency:
+//
+//   ./gradlew :benchmark:goldenLatency [-Pgolden=/path/to/set] [-PupdateBaseline] [-PmaxSlowdown=0.2]
+//
+// p50, p95 and p99 of the whole detection and of every stage are recorded, taken from every
+// sample and not from the PipelineMetrics buckets. The p50 and p95 of the detection and of
+// every stage that takes at least MIN_STAGE_SHARE of it may not grow by more than
+// maxSlowdown plus LATENCY_SLACK_US; the p99 is only reported.
+//
+// The baseline is in microseconds of the machine it was written on, so this is not part of
+// check: run it on that machine, or write a baseline for yours first.
+public class GoldenLatencyTest {
+
+    // Timed runs per frame, enough samples for a stable p95 on a busy machine
+    private static final int RUNS = 30;
+    private static final long LATENCY_SLACK_US = 200;
+    // Stages below this share of the detection are reported, not checked
+    private static final double MIN_STAGE_SHARE = 0.1;
+    private static final String DETECTION = "detection";
+    private static final int[] PERCENTILES = {50, 95, 99};
+    private static final int[] CHECKED = {50, 95};
+
+    // Keeps every sample next to the buckets, for exact percentiles
+    private static final class SampleMetrics extends PipelineMetrics {
+        private final long[][] mSamples = new long[Stage.values().length][];
+        private final int[] mSizes = new int[Stage.values().length];
+
+        SampleMetrics(int capacity) {
+            for (int s = 0; s < mSamples.length; s++) {
+                mSamples[s] = new long[capacity];
+            }
+        }
+
+        @Override
+        public synchronized void recordMicros(Stage stage, long micros) {
+            super.recordMicros(stage, micros);
+            int s = stage.ordinal();
+            if (mSizes[s] == mSamples[s].length) {
+                mSamples[s] = Arrays.copyOf(mSamples[s], 2 * mSizes[s]);
+            }
+            mSamples[s][mSizes[s]++] = micros;
+        }
+
+        @Override
+        public synchronized void reset() {
+            super.reset();
+            Arrays.fill(mSizes, 0);
+        }
+
+        synchronized long[] samples(Stage stage) {
+            return Arrays.copyOf(mSamples[stage.ordinal()], mSizes[stage.ordinal()]);
+        }
+    }
+
+    private static GoldenSet sSet;
+
+    @BeforeClass
+    public static void loadSet() throws IOException {
+        sSet = GoldenSet.load();
+    }
+
+    @AfterClass
+    public static void releaseSet() {
+        sSet.release();
+    }
+
+    @Test
+    public void latencyDoesNotRegress() throws IOException {
+        SampleMetrics metrics = new SampleMetrics(sSet.frames.size() * RUNS);
+        metrics.setEnabled(true);
+        CornerDetectOptions options = CornerDetectOptions.defaults().setMetrics(metrics);
+        // Warm up, then only the following runs are timed
+        for (GoldenSet.Frame frame : sSet.frames) {
+            CornorDetect.getCorner(frame.gray, options);
+        }
+        metrics.reset();
+        long[] totals = new long[sSet.frames.size() * RUNS];
+        int t = 0;
+        for (int r = 0; r < RUNS; r++) {
+            for (GoldenSet.Frame frame : sSet.frames) {
+                long start = System.nanoTime();
+                CornorDetect.getCorner(frame.gray, options);
+                totals[t++] = (System.nanoTime() - start) / 1000;
+            }
+        }
+
+        Map<String, Double> latency = new TreeMap<>();
+        put(latency, DETECTION, totals);
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            long[] samples = metrics.samples(stage);
+            if (samples.length > 0) {
+                put(latency, stage.name().toLowerCase(Locale.US), samples);
+            }
+        }
+        System.out.println("Latency on " + sSet.version + " over " + totals.length + " runs: " + latency);
+
+        File file = sSet.baseline("latency");
+        if (GoldenSet.updating()) {
+            GoldenSet.store(file, latency, String.format(Locale.US, "Latency in us on %s, %s %s with %d cores",
+                    sSet.version, System.getProperty("os.name"), System.getProperty("os.arch"),
+                    Runtime.getRuntime().availableProcessors()));
+            return;
+        }
+        Map<String, Double> base = GoldenSet.read(file);
+        double maxSlowdown = Double.parseDouble(System.getProperty("golden.maxSlowdown", "0.2"));
+        List<String> regressions = new ArrayList<>();
+        for (int percentile : CHECKED) {
+            String prefix = "p" + percentile + "_us.";
+            double detection = base.getOrDefault(prefix + DETECTION, 0.0);
+            for (String key : latency.keySet()) {
+                if (!key.startsWith(prefix)) {
+                    continue;
+                }
+                // The percentiles of a short stage are mostly scheduler noise
+                if (key.equals(prefix + DETECTION) || base.getOrDefault(key, 0.0) >= MIN_STAGE_SHARE * detection) {
+                    GoldenSet.check(regressions, key, latency, base, LATENCY_SLACK_US, maxSlowdown, false);
+                }
+            }
+        }
+        assertTrue("Latency regressed on " + sSet.version + ": " + regressions, regressions.isEmpty());
+    }
+
+    private static void put(Map<String, Double> latency, String name, long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        for (int percentile : PERCENTILES) {
+            latency.put("p" + percentile + "_us." + name, (double) percentile(sorted, percentile));
+        }
+    }
+
+    // Nearest rank
+    private static long percentile(long[] sorted, int percentile) {
+        return sorted[(int) Math.ceil(percentile / 100.0 * sorted.length) - 1];
+    }
+}
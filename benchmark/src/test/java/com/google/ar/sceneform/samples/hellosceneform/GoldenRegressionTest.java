@@ -0,0 +1,122 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Point;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertTrue;
+
+// Detection accuracy on a labelled frame set (see GoldenSet) against <set>.accuracy. Runs in
+// check, it does not depend on the machine:
+//
+//   ./gradlew :benchmark:golden [-Pgolden=/path/to/set] [-PupdateBaseline]
+//
+// The set has frames the detection gets wrong, so nothing asks for every frame to pass.
+// The baseline records the share of frames detected within CORRECT_DISTANCE and the share
+// of feet measured within FOOT_TOLERANCE_MM, and neither may drop; the mean errors of those
+// that pass may not grow by more than the slack. A detection change that fixes frames
+// raises the rates, write the baseline anew with it.
+public class GoldenRegressionTest {
+
+    // A detection is correct when its corners are this close to the true ones on average
+    private static final double CORRECT_DISTANCE = 5;
+    private static final double FOOT_TOLERANCE_MM = 3;
+
+    private static final double RATE_SLACK = 1e-6;
+    private static final double CORNER_SLACK_PX = 0.5;
+    private static final double FOOT_SLACK_MM = 1;
+
+    private static GoldenSet sSet;
+
+    @BeforeClass
+    public static void loadSet() throws IOException {
+        sSet = GoldenSet.load();
+    }
+
+    @AfterClass
+    public static void releaseSet() {
+        sSet.release();
+    }
+
+    @Test
+    public void accuracyDoesNotRegress() throws IOException {
+        List<String> misses = new ArrayList<>();
+        int correct = 0;
+        double cornerSum = 0;
+        int feet = 0;
+        int measured = 0;
+        double footSum = 0;
+        for (GoldenSet.Frame frame : sSet.frames) {
+            ArrayList<Point> corners = CornorDetect.getCorner(frame.gray);
+            double error = corners == null ? Double.MAX_VALUE : GoldenSet.cornerError(corners, frame.corners);
+            if (error < CORRECT_DISTANCE) {
+                correct++;
+                cornerSum += error;
+            } else {
+                misses.add(corners == null ? frame.name + " not found"
+                        : String.format(Locale.US, "%s off by %.1f px", frame.name, error));
+            }
+            if (frame.foot != null) {
+                feet++;
+                double footError = footError(frame, corners);
+                if (footError <= FOOT_TOLERANCE_MM) {
+                    measured++;
+                    footSum += footError;
+                } else {
+                    misses.add(String.format(Locale.US, "%s foot off by %.1f mm", frame.name, footError));
+                }
+            }
+        }
+
+        Map<String, Double> accuracy = new TreeMap<>();
+        accuracy.put("detection_rate", correct / (double) sSet.frames.size());
+        if (correct > 0) {
+            accuracy.put("corner_error_px", cornerSum / correct);
+        }
+        if (feet > 0) {
+            accuracy.put("foot_rate", measured / (double) feet);
+        }
+        if (measured > 0) {
+            accuracy.put("foot_error_mm", footSum / measured);
+        }
+        System.out.println("Accuracy on " + sSet.version + ": " + accuracy);
+        System.out.println("Misses on " + sSet.version + ": " + misses);
+
+        File file = sSet.baseline("accuracy");
+        if (GoldenSet.updating()) {
+            GoldenSet.store(file, accuracy, String.format(Locale.US,
+                    "Detection within %.0f px and feet within %.0f mm on %s, mean errors of those",
+                    CORRECT_DISTANCE, FOOT_TOLERANCE_MM, sSet.version));
+            return;
+        }
+        Map<String, Double> base = GoldenSet.read(file);
+        List<String> regressions = new ArrayList<>();
+        GoldenSet.check(regressions, "detection_rate", accuracy, base, RATE_SLACK, 0, true);
+        GoldenSet.check(regressions, "foot_rate", accuracy, base, RATE_SLACK, 0, true);
+        GoldenSet.check(regressions, "corner_error_px", accuracy, base, CORNER_SLACK_PX, 0, false);
+        GoldenSet.check(regressions, "foot_error_mm", accuracy, base, FOOT_SLACK_MM, 0, false);
+        assertTrue("Accuracy regressed on " + sSet.version + ": " + regressions + ", misses " + misses,
+                regressions.isEmpty());
+    }
+
+    // Mean of the length and width errors with the detected corners, a foot that is not
+    // found is off by its whole size
+    private static double footError(GoldenSet.Frame frame, ArrayList<Point> corners) {
+        SheetMeasurer measurer = new SheetMeasurer(frame.sheetWidthMm, frame.sheetHeightMm);
+        SheetMeasurer.Result measured = measurer.measure(frame.gray, corners);
+        measurer.release();
+        if (measured == null) {
+            return (frame.foot[0] + frame.foot[1]) / 2;
+        }
+        return (Math.abs(measured.lengthMm - frame.foot[0]) + Math.abs(measured.widthMm - frame.foot[1])) / 2;
+    }
+}
@@ -0,0 +1,184 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.fail;
+
+// A labelled frame set and the baselines versioned next to it, shared by GoldenRegressionTest
+// (accuracy) and GoldenLatencyTest.
+//
+// A set is a directory with the frames and a labels.tsv, one line per frame:
+//   file  x0 y0 x1 y1 x2 y2 x3 y3  sheet_w_mm sheet_h_mm  foot_length_mm foot_width_mm
+// with the true sheet corners in pixels of the upright gray frame, and "-" for no foot.
+// Lines starting with # are comments, "# version N" versions the set. The sets in golden/
+// are written by GoldenSetGenerator, their labels are what the frames were drawn from.
+//
+// The baselines are <set>.accuracy and <set>.latency. A missing baseline fails, the
+// golden.update property writes them instead of checking them.
+final class GoldenSet {
+
+    static final String DEFAULT_DIR = "golden/v2";
+
+    static final class Frame {
+        String name;
+        Mat gray;
+        List<Point> corners;
+        double sheetWidthMm;
+        double sheetHeightMm;
+        // Length and width, null without a foot
+        double[] foot;
+    }
+
+    final File dir;
+    final List<Frame> frames = new ArrayList<>();
+    // Name and version, for the messages
+    final String version;
+
+    private GoldenSet(File dir) throws IOException {
+        this.dir = dir;
+        version = String.format(Locale.US, "%s (version %d)", dir.getName(), load(dir, frames));
+    }
+
+    // The set of the golden.dir property
+    static GoldenSet load() throws IOException {
+        nu.pattern.OpenCV.loadLocally();
+        return new GoldenSet(new File(System.getProperty("golden.dir", DEFAULT_DIR)));
+    }
+
+    static boolean updating() {
+        return Boolean.getBoolean("golden.update");
+    }
+
+    void release() {
+        for (Frame frame : frames) {
+            frame.gray.release();
+        }
+    }
+
+    // Next to the set directory, golden/v2.accuracy for golden/v2
+    File baseline(String kind) {
+        return new File(dir.getAbsoluteFile().getParentFile(), dir.getName() + "." + kind);
+    }
+
+    // Mean distance of every true corner to the nearest detected one
+    static double cornerError(List<Point> detected, List<Point> reference) {
+        double sum = 0;
+        for (Point expected : reference) {
+            double best = Double.MAX_VALUE;
+            for (Point found : detected) {
+                best = Math.min(best, Math.hypot(found.x - expected.x, found.y - expected.y));
+            }
+            sum += best;
+        }
+        return sum / reference.size();
+    }
+
+    // Worse than the baseline by more than slack plus the relative allowance is a regression.
+    // Lower is better, unless higherIsBetter.
+    static void check(List<String> regressions, String key, Map<String, Double> current,
+                      Map<String, Double> base, double slack, double relative, boolean higherIsBetter) {
+        Double value = current.get(key);
+        Double expected = base.get(key);
+        if (value == null) {
+            return;
+        }
+        if (expected == null) {
+            regressions.add(key + " has no baseline");
+            return;
+        }
+        boolean worse = higherIsBetter
+                ? value < expected * (1 - relative) - slack
+                : value > expected * (1 + relative) + slack;
+        if (worse) {
+            regressions.add(String.format(Locale.US, "%s %.4f, baseline %.4f", key, value, expected));
+        }
+    }
+
+    static Map<String, Double> read(File file) throws IOException {
+        if (!file.isFile()) {
+            fail("No baseline " + file + ", write it with -PupdateBaseline");
+        }
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+        Map<String, Double> values = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, Double.parseDouble(properties.getProperty(key)));
+        }
+        return values;
+    }
+
+    // Sorted, without the date line of Properties.store(), so a baseline only changes with its values
+    static void store(File file, Map<String, Double> values, String comment) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("# " + comment + "\n");
+            for (Map.Entry<String, Double> value : values.entrySet()) {
+                writer.write(String.format(Locale.US, "%s=%.4f%n", value.getKey(), value.getValue()));
+            }
+        }
+        System.out.println("Baseline written to " + file);
+    }
+
+    // Reads the frames and labels of a set, returns its version
+    private static int load(File root, List<Frame> frames) throws IOException {
+        File labels = new File(root, "labels.tsv");
+        int version = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(labels))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("# version ")) {
+                    version = Integer.parseInt(line.substring("# version ".length()).trim());
+                }
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length != 13) {
+                    throw new IllegalArgumentException("Expected 13 fields in " + labels + ": " + line);
+                }
+                Frame frame = new Frame();
+                frame.name = fields[0];
+                frame.gray = Imgcodecs.imread(new File(root, fields[0]).getPath(), Imgcodecs.IMREAD_GRAYSCALE);
+                if (frame.gray.empty()) {
+                    throw new IllegalArgumentException("Can not read " + fields[0] + " of " + root);
+                }
+                frame.corners = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    frame.corners.add(new Point(Double.parseDouble(fields[1 + 2 * i]),
+                            Double.parseDouble(fields[2 + 2 * i])));
+                }
+                frame.sheetWidthMm = Double.parseDouble(fields[9]);
+                frame.sheetHeightMm = Double.parseDouble(fields[10]);
+                if (!fields[11].equals("-")) {
+                    frame.foot = new double[]{Double.parseDouble(fields[11]), Double.parseDouble(fields[12])};
+                }
+                frames.add(frame);
+            }
+        }
+        if (version == 0) {
+            throw new IllegalArgumentException("No \"# version N\" line in " + labels);
+        }
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("No frames in " + labels);
+        }
+        return version;
+    }
+}
@@ -0,0 +1,136 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Writes a labelled frame set for GoldenRegressionTest and GoldenLatencyTest:
+//
+//   ./gradlew :benchmark:goldenSet -Pgolden=golden/v3
+//
+// The labels are what the frames are drawn from, not what the pipeline finds in them: the
+// sheet corners are the ones SheetFrames renders the sheet onto and the foot size is that
+// of its outline in millimeters. A set that is committed is never written again, changed
+// frames or labels go into a new version directory.
+//
+// Version 1 only held frames the detection got right: upright sheets and a small foot near
+// the first corner. Version 2 keeps those and adds the cases it does not handle yet: feet
+// further down the sheet, whose outline getPoint() takes for a far corner, and sheets that
+// are turned or seen at an angle (a keystone). Those frames are expected to fail, the
+// accuracy baseline records how many pass.
+final class GoldenSetGenerator {
+
+    static final int VERSION = 2;
+    private static final int ROWS = 640;
+    private static final int COLS = 480;
+    // Sensor noise, low enough for the set to stay small as PNG
+    private static final double NOISE = 1.5;
+
+    // Sheet: left, top, pixels per millimeter, turn in degrees around its center and keystone,
+    // the pixels each top corner moves in as if seen from below. Foot in millimeters on the
+    // sheet: center x, center y, length, width and turn in degrees, no foot when the length is 0.
+    private static final double[][] FRAMES = {
+            // Upright, foot near the first corner (version 1)
+            {40, 30, 1.9, 0, 0, 70, 100, 150, 60, 0},
+            {60, 60, 1.7, 0, 0, 75, 95, 140, 55, 8},
+            {90, 80, 1.5, 0, 0, 70, 105, 160, 62, -6},
+            {120, 120, 1.3, 0, 0, 65, 100, 150, 58, 4},
+            {50, 100, 1.6, 0, 0, 80, 90, 130, 52, -10},
+            {100, 40, 1.7, 0, 0, 72, 98, 145, 60, 2},
+            {70, 70, 1.8, 0, 0, 0, 0, 0, 0, 0},
+            {130, 150, 1.2, 0, 0, 0, 0, 0, 0, 0},
+            // Upright, foot further down the sheet
+            {60, 60, 1.7, 0, 0, 105, 190, 150, 60, 5},
+            {90, 50, 1.8, 0, 0, 100, 210, 160, 62, -4},
+            {50, 40, 1.9, 0, 0, 105, 150, 240, 95, 0},
+            // Turned
+            {90, 70, 1.5, 6, 0, 70, 100, 150, 60, 0},
+            {100, 90, 1.4, -10, 0, 0, 0, 0, 0, 0},
+            // Seen at an angle
+            {60, 60, 1.7, 0, 40, 70, 100, 150, 60, 0},
+            {80, 70, 1.6, 5, 60, 105, 180, 150, 58, 3},
+            {110, 100, 1.4, 0, 30, 0, 0, 0, 0, 0},
+    };
+
+    private GoldenSetGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: GoldenSetGenerator <set directory>");
+            System.exit(2);
+        }
+        File dir = new File(args[0]);
+        if (dir.exists()) {
+            throw new IllegalArgumentException("Sets are not overwritten, " + dir + " exists");
+        }
+        if (!dir.mkdirs()) {
+            throw new IOException("Can not create " + dir);
+        }
+        nu.pattern.OpenCV.loadLocally();
+
+        try (Writer labels = new FileWriter(new File(dir, "labels.tsv"))) {
+            labels.write("# version " + VERSION + "\n");
+            labels.write("# Written by GoldenSetGenerator, the labels are the drawn corners and foot outline\n");
+            labels.write("#file\tx0\ty0\tx1\ty1\tx2\ty2\tx3\ty3\tsheet_w_mm\tsheet_h_mm\tfoot_length_mm\tfoot_width_mm\n");
+            for (int i = 0; i < FRAMES.length; i++) {
+                double[] frame = FRAMES[i];
+                Point[] corners = corners(frame[0], frame[1], frame[2], frame[3], frame[4]);
+                List<Point[]> outlines = new ArrayList<>();
+                double[] foot = null;
+                if (frame[7] > 0) {
+                    Point[] outline = SheetFrames.foot(frame[5], frame[6], frame[7], frame[8], frame[9], 0);
+                    outlines.add(outline);
+                    foot = SheetFrames.size(outline);
+                }
+                Mat gray = SheetFrames.render(ROWS, COLS, corners, SheetMeasurer.A4_WIDTH_MM,
+                        SheetMeasurer.A4_HEIGHT_MM, NOISE, i + 1, outlines);
+                String name = String.format(Locale.US, "frame%02d.png", i);
+                if (!Imgcodecs.imwrite(new File(dir, name).getPath(), gray)) {
+                    throw new IOException("Can not write " + name);
+                }
+                gray.release();
+
+                StringBuilder line = new StringBuilder(name);
+                for (Point corner : corners) {
+                    line.append(String.format(Locale.US, "\t%.1f\t%.1f", corner.x, corner.y));
+                }
+                line.append(String.format(Locale.US, "\t%.0f\t%.0f", SheetMeasurer.A4_WIDTH_MM, SheetMeasurer.A4_HEIGHT_MM));
+                if (foot == null) {
+                    line.append("\t-\t-");
+                } else {
+                    line.append(String.format(Locale.US, "\t%.1f\t%.1f", foot[0], foot[1]));
+                }
+                labels.write(line.append('\n').toString());
+            }
+        }
+        System.out.println("Wrote " + FRAMES.length + " frames to " + dir);
+    }
+
+    // A4 sheet at the given scale, turned and keystoned, on whole pixels as the sheet is filled
+    private static Point[] corners(double left, double top, double scale, double turn, double keystone) {
+        double right = left + SheetMeasurer.A4_WIDTH_MM * scale;
+        double bottom = top + SheetMeasurer.A4_HEIGHT_MM * scale;
+        Point[] corners = {new Point(left + keystone, top), new Point(right - keystone, top),
+                new Point(right, bottom), new Point(left, bottom)};
+        double cx = (left + right) / 2;
+        double cy = (top + bottom) / 2;
+        double cos = Math.cos(Math.toRadians(turn));
+        double sin = Math.sin(Math.toRadians(turn));
+        for (Point corner : corners) {
+            double x = corner.x - cx;
+            double y = corner.y - cy;
+            corner.x = Math.round(cx + x * cos - y * sin);
+            corner.y = Math.round(cy + x * sin + y * cos);
+        }
+        return corners;
+    }
+}
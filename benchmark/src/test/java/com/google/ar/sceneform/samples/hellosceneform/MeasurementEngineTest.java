@@ -0,0 +1,129 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MeasurementEngineTest {
+
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void segmentAndTotalLengths() {
+        MeasurementEngine engine = new MeasurementEngine();
+        assertEquals(0, engine.addPoint(0, 0, 0), 0);
+        assertEquals(5, engine.addPoint(3, 4, 0), EPSILON);
+        assertEquals(2, engine.addPoint(3, 4, 2), EPSILON);
+
+        assertEquals(3, engine.getPointCount());
+        assertEquals(2, engine.getSegmentCount());
+        assertEquals(5, engine.getSegmentLength(0), EPSILON);
+        assertEquals(2, engine.getSegmentLength(1), EPSILON);
+        assertEquals(2, engine.getLastSegmentLength(), EPSILON);
+        assertEquals(7, engine.getTotalLength(), EPSILON);
+    }
+
+    // A 2 m square on a floor (y up) far from the world origin
+    @Test
+    public void areaOfSquareOnFloor() {
+        MeasurementEngine engine = new MeasurementEngine();
+        float x = 1000;
+        float z = -1000;
+        engine.addPoint(x, 0.5f, z);
+        engine.addPoint(x + 2, 0.5f, z);
+        assertEquals(0, engine.getArea(), 0);
+        engine.addPoint(x + 2, 0.5f, z + 2);
+        assertEquals(2, engine.getArea(), EPSILON);
+        engine.addPoint(x, 0.5f, z + 2);
+
+        assertEquals(4, engine.getArea(), EPSILON);
+        assertEquals(6, engine.getTotalLength(), EPSILON);
+    }
+
+    // Same triangle on a tilted plane, the area does not depend on the orientation
+    @Test
+    public void areaOfTiltedTriangle() {
+        MeasurementEngine engine = new MeasurementEngine();
+        engine.addPoint(0, 0, 0);
+        engine.addPoint(1, 1, 0);
+        engine.addPoint(0, 0, 2);
+
+        assertEquals(0.5 * Math.sqrt(2) * 2, engine.getArea(), EPSILON);
+    }
+
+    @Test
+    public void extentsAndBounds() {
+        MeasurementEngine engine = new MeasurementEngine();
+        float[] extents = new float[3];
+        engine.getExtents(extents);
+        assertArrayEquals(new float[]{0, 0, 0}, extents, 0);
+
+        engine.addPoint(1, 2, 3);
+        engine.addPoint(-1, 5, 4);
+        engine.addPoint(2, 0, 3.5f);
+
+        engine.getExtents(extents);
+        assertArrayEquals(new float[]{3, 5, 1}, extents, EPSILON);
+        float[] min = new float[3];
+        float[] max = new float[3];
+        engine.getMin(min);
+        engine.getMax(max);
+        assertArrayEquals(new float[]{-1, 0, 3}, min, 0);
+        assertArrayEquals(new float[]{2, 5, 4}, max, 0);
+    }
+
+    // Past the initial capacity of the buffers
+    @Test
+    public void growsPastInitialCapacity() {
+        MeasurementEngine engine = new MeasurementEngine();
+        int points = 100;
+        for (int i = 0; i < points; i++) {
+            engine.addPoint(i, 0, 0);
+        }
+
+        assertEquals(points, engine.getPointCount());
+        assertEquals(points - 1, engine.getTotalLength(), EPSILON);
+        for (int i = 0; i < points; i++) {
+            assertEquals(i, engine.getPoint(i, 0), 0);
+        }
+        for (int i = 0; i < points - 1; i++) {
+            assertEquals(1, engine.getSegmentLength(i), EPSILON);
+        }
+        assertEquals(0, engine.getArea(), 0);
+    }
+
+    @Test
+    public void clearStartsOver() {
+        MeasurementEngine engine = new MeasurementEngine();
+        engine.addPoint(0, 0, 0);
+        engine.addPoint(1, 0, 0);
+        engine.addPoint(1, 0, 1);
+        engine.clear();
+
+        assertEquals(0, engine.getPointCount());
+        assertEquals(0, engine.getSegmentCount());
+        assertEquals(0, engine.getTotalLength(), 0);
+        assertEquals(0, engine.getArea(), 0);
+        assertEquals(0, engine.getLastSegmentLength(), 0);
+
+        engine.addPoint(5, 5, 5);
+        engine.addPoint(5, 6, 5);
+        float[] extents = new float[3];
+        engine.getExtents(extents);
+        assertArrayEquals(new float[]{0, 1, 0}, extents, 0);
+        assertEquals(1, engine.getTotalLength(), EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingSegmentIsRejected() {
+        MeasurementEngine engine = new MeasurementEngine();
+        engine.addPoint(0, 0, 0);
+        engine.getSegmentLength(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingPointIsRejected() {
+        new MeasurementEngine().getPoint(0, 0);
+    }
+}
@@ -0,0 +1,165 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MeasurementJournalTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static final class Record {
+        long time;
+        int mode;
+        float[] from;
+        float[] to;
+        float distance;
+    }
+
+    @Test
+    public void recordsReadBackAfterClose() throws IOException {
+        File dir = mFolder.newFolder();
+        try (MeasurementJournal journal = MeasurementJournal.open(dir)) {
+            for (int i = 0; i < 10; i++) {
+                append(journal, i);
+            }
+        }
+
+        List<Record> records = read(dir);
+        assertEquals(10, records.size());
+        for (int i = 0; i < 10; i++) {
+            assertRecord(i, records.get(i));
+        }
+    }
+
+    @Test
+    public void reopenAppendsToLastSegment() throws IOException {
+        File dir = mFolder.newFolder();
+        try (MeasurementJournal journal = MeasurementJournal.open(dir)) {
+            append(journal, 0);
+            append(journal, 1);
+        }
+        try (MeasurementJournal journal = MeasurementJournal.open(dir)) {
+            append(journal, 2);
+        }
+
+        List<Record> records = read(dir);
+        assertEquals(3, records.size());
+        for (int i = 0; i < 3; i++) {
+            assertRecord(i, records.get(i));
+        }
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    // The writer commits on its own, without a close
+    @Test
+    public void appendedRecordsAreCommittedInTheBackground() throws Exception {
+        File dir = mFolder.newFolder();
+        MeasurementJournal journal = MeasurementJournal.open(dir);
+        append(journal, 0);
+        append(journal, 1);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (read(dir).size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, read(dir).size());
+        journal.close();
+    }
+
+    @Test
+    public void fullSegmentRollsOverToTheNext() throws IOException {
+        File dir = mFolder.newFolder();
+        int total = MeasurementJournal.SEGMENT_RECORDS + 5;
+        try (MeasurementJournal journal = MeasurementJournal.open(dir)) {
+            for (int i = 0; i < total; i++) {
+                append(journal, i);
+            }
+        }
+
+        assertEquals(2, dir.listFiles().length);
+        List<Record> records = read(dir);
+        assertEquals(total, records.size());
+        assertRecord(0, records.get(0));
+        assertRecord(MeasurementJournal.SEGMENT_RECORDS, records.get(MeasurementJournal.SEGMENT_RECORDS));
+        assertRecord(total - 1, records.get(total - 1));
+    }
+
+    @Test
+    public void exportCsvWritesHeaderAndOneLinePerRecord() throws IOException {
+        File dir = mFolder.newFolder();
+        try (MeasurementJournal journal = MeasurementJournal.open(dir)) {
+            append(journal, 0);
+            append(journal, 1);
+        }
+
+        StringBuilder csv = new StringBuilder();
+        assertEquals(2, MeasurementJournal.exportCsv(dir, csv));
+        String[] lines = csv.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("time_ms,mode,"));
+        assertEquals(17, lines[1].split(",").length);
+        assertTrue(lines[2].startsWith("1001," + MeasurementJournal.MODE_LIST + ","));
+    }
+
+    @Test(expected = IOException.class)
+    public void appendAfterCloseFails() throws IOException {
+        MeasurementJournal journal = MeasurementJournal.open(mFolder.newFolder());
+        journal.close();
+        append(journal, 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void foreignFileIsRejected() throws IOException {
+        File dir = mFolder.newFolder();
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, "measurements-00000.journal"), "rw")) {
+            file.write(new byte[MeasurementJournal.HEADER_BYTES]);
+        }
+        MeasurementJournal.open(dir);
+    }
+
+    private static void append(MeasurementJournal journal, int i) throws IOException {
+        journal.append(1000 + i, MeasurementJournal.MODE_LIST, pose(i), pose(-i), i / 10f);
+    }
+
+    private static void assertRecord(int i, Record record) {
+        assertEquals(1000 + i, record.time);
+        assertEquals(MeasurementJournal.MODE_LIST, record.mode);
+        assertArrayEquals(pose(i), record.from, 0);
+        assertArrayEquals(pose(-i), record.to, 0);
+        assertEquals(i / 10f, record.distance, 0);
+    }
+
+    private static float[] pose(int i) {
+        float[] pose = new float[MeasurementJournal.POSE_FLOATS];
+        for (int k = 0; k < pose.length; k++) {
+            pose[k] = i + k / 8f;
+        }
+        return pose;
+    }
+
+    private static List<Record> read(File dir) throws IOException {
+        List<Record> records = new ArrayList<>();
+        MeasurementJournal.read(dir, (time, mode, from, to, distance) -> {
+            Record record = new Record();
+            record.time = time;
+            record.mode = mode;
+            record.from = from.clone();
+            record.to = to.clone();
+            record.distance = distance;
+            records.add(record);
+        });
+        return records;
+    }
+}
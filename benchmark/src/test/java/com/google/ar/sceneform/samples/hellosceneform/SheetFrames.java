@@ -0,0 +1,123 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Frames of a sheet with a foot on it, drawn from millimeters on the sheet through the
+// homography onto the image corners of the sheet. The true foot size comes from the outline
+// in millimeters, not from SheetMeasurer.
+final class SheetFrames {
+
+    static final double FLOOR = 80;
+    static final double SHEET = 220;
+    static final double FOOT = 60;
+
+    private SheetFrames() {
+    }
+
+    // Gray rows x cols frame: the sheet corners (0, 0), (width, 0), (width, height), (0, height)
+    // in millimeters land on corners, every outline in millimeters is filled dark.
+    // Gaussian noise of the given sigma, 0 for none.
+    static Mat render(int rows, int cols, Point[] corners, double widthMm, double heightMm,
+                      double noise, long seed, List<Point[]> outlinesMm) {
+        Mat gray = new Mat(rows, cols, CvType.CV_8UC1, new Scalar(FLOOR));
+        Imgproc.fillConvexPoly(gray, new MatOfPoint(corners), new Scalar(SHEET), Imgproc.LINE_AA, 0);
+
+        Mat homography = homography(corners, widthMm, heightMm);
+        List<MatOfPoint> outlines = new ArrayList<>();
+        for (Point[] outline : outlinesMm) {
+            if (outline.length > 0) {
+                outlines.add(new MatOfPoint(toImage(homography, outline)));
+            }
+        }
+        homography.release();
+        if (!outlines.isEmpty()) {
+            Imgproc.fillPoly(gray, outlines, new Scalar(FOOT), Imgproc.LINE_AA, 0, new Point());
+        }
+
+        if (noise > 0) {
+            Core.setRNGSeed((int) seed);
+            Mat grain = new Mat(rows, cols, CvType.CV_16SC1);
+            Core.randn(grain, 0, noise);
+            Mat sum = new Mat();
+            gray.convertTo(sum, CvType.CV_16SC1);
+            Core.add(sum, grain, sum);
+            sum.convertTo(gray, CvType.CV_8UC1);
+            grain.release();
+            sum.release();
+        }
+        Imgproc.GaussianBlur(gray, gray, new Size(3, 3), 0);
+        return gray;
+    }
+
+    static Mat render(int rows, int cols, Point[] corners, Point[] footMm) {
+        return render(rows, cols, corners, SheetMeasurer.A4_WIDTH_MM, SheetMeasurer.A4_HEIGHT_MM, 0, 0,
+                Collections.singletonList(footMm));
+    }
+
+    // Foot as an ellipse of the given length and width turned by angle degrees from the long
+    // side of the sheet, cut off where it crosses y = minY (a heel at the edge of the sheet)
+    static Point[] foot(double centerX, double centerY, double lengthMm, double widthMm, double angle, double minY) {
+        int n = 180;
+        double a = Math.toRadians(angle);
+        List<Point> outline = new ArrayList<>();
+        Point previous = null;
+        for (int i = 0; i <= n; i++) {
+            double t = 2 * Math.PI * i / n;
+            double u = widthMm / 2 * Math.cos(t);
+            double v = lengthMm / 2 * Math.sin(t);
+            Point point = new Point(centerX + u * Math.cos(a) - v * Math.sin(a),
+                    centerY + u * Math.sin(a) + v * Math.cos(a));
+            // Keeps the part with y >= minY, with the crossings of the line
+            if (previous != null && (previous.y < minY) != (point.y < minY)) {
+                double s = (minY - previous.y) / (point.y - previous.y);
+                outline.add(new Point(previous.x + s * (point.x - previous.x), minY));
+            }
+            if (point.y >= minY && i < n) {
+                outline.add(point);
+            }
+            previous = point;
+        }
+        return outline.toArray(new Point[0]);
+    }
+
+    // Length and width of the smallest rectangle around an outline in millimeters
+    static double[] size(Point[] outlineMm) {
+        MatOfPoint2f points = new MatOfPoint2f(outlineMm);
+        RotatedRect box = Imgproc.minAreaRect(points);
+        points.release();
+        return new double[]{Math.max(box.size.width, box.size.height), Math.min(box.size.width, box.size.height)};
+    }
+
+    static Mat homography(Point[] corners, double widthMm, double heightMm) {
+        MatOfPoint2f sheet = new MatOfPoint2f(
+                new Point(0, 0), new Point(widthMm, 0), new Point(widthMm, heightMm), new Point(0, heightMm));
+        MatOfPoint2f image = new MatOfPoint2f(corners);
+        Mat homography = Imgproc.getPerspectiveTransform(sheet, image);
+        sheet.release();
+        image.release();
+        return homography;
+    }
+
+    private static Point[] toImage(Mat homography, Point[] pointsMm) {
+        MatOfPoint2f source = new MatOfPoint2f(pointsMm);
+        MatOfPoint2f target = new MatOfPoint2f();
+        Core.perspectiveTransform(source, target, homography);
+        Point[] points = target.toArray();
+        source.release();
+        target.release();
+        return points;
+    }
+}
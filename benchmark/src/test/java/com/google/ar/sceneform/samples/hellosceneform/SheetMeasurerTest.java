@@ -0,0 +1,117 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SheetMeasurerTest {
+
+    // Warping at 2 px/mm, antialiased edges and the Otsu threshold
+    private static final double TOLERANCE_MM = 3;
+
+    // A4 seen at an angle, the far (top) side shorter
+    private static final Point[] CORNERS = {
+            new Point(130, 110), new Point(360, 120), new Point(410, 560), new Point(70, 545)};
+
+    private SheetMeasurer mMeasurer;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Before
+    public void setUp() {
+        mMeasurer = new SheetMeasurer();
+    }
+
+    @After
+    public void tearDown() {
+        mMeasurer.release();
+    }
+
+    @Test
+    public void footInsideSheetIsMeasured() {
+        Point[] foot = SheetFrames.foot(105, 150, 240, 95, 6, 0);
+        Mat gray = SheetFrames.render(640, 480, CORNERS, foot);
+
+        // Corners in the order of getPoint(), not around the sheet
+        SheetMeasurer.Result result = mMeasurer.measure(gray,
+                Arrays.asList(CORNERS[0], CORNERS[2], CORNERS[3], CORNERS[1]));
+
+        assertFoot(SheetFrames.size(foot), result);
+        gray.release();
+    }
+
+    // The heel at the edge of the sheet, as when the foot stands against a wall
+    @Test
+    public void footReachingOneSideIsMeasured() {
+        Point[] foot = SheetFrames.foot(105, 120, 270, 95, 0, 0);
+        Mat gray = SheetFrames.render(640, 480, CORNERS, foot);
+
+        SheetMeasurer.Result result = mMeasurer.measure(gray, Arrays.asList(CORNERS));
+
+        double[] expected = SheetFrames.size(foot);
+        assertEquals(255, expected[0], 0.1);
+        assertFoot(expected, result);
+        gray.release();
+    }
+
+    // Floor along a long side, into both corners, is bigger than the foot but not taken for it
+    @Test
+    public void regionReachingSeveralSidesIsIgnored() {
+        Point[] foot = SheetFrames.foot(120, 150, 150, 60, 0, 0);
+        Point[] floor = {new Point(0, 0), new Point(40, 0), new Point(40, 297), new Point(0, 297)};
+        List<Point[]> dark = Arrays.asList(foot, floor);
+        Mat gray = SheetFrames.render(640, 480, CORNERS, SheetMeasurer.A4_WIDTH_MM, SheetMeasurer.A4_HEIGHT_MM,
+                0, 0, dark);
+
+        SheetMeasurer.Result result = mMeasurer.measure(gray, Arrays.asList(CORNERS));
+
+        assertFoot(SheetFrames.size(foot), result);
+        gray.release();
+    }
+
+    @Test
+    public void emptySheetHasNoFoot() {
+        Mat gray = SheetFrames.render(640, 480, CORNERS, new Point[0]);
+        assertNull(mMeasurer.measure(gray, Arrays.asList(CORNERS)));
+        gray.release();
+    }
+
+    @Test
+    public void cornersThatAreNoSheetAreRejected() {
+        Mat gray = SheetFrames.render(640, 480, CORNERS, SheetFrames.foot(105, 150, 240, 95, 0, 0));
+
+        // Far longer than a sheet, even in perspective
+        assertNull(mMeasurer.measure(gray, Arrays.asList(
+                new Point(100, 100), new Point(250, 100), new Point(250, 600), new Point(100, 600))));
+        // Not convex
+        assertNull(mMeasurer.measure(gray, Arrays.asList(
+                new Point(100, 100), new Point(400, 100), new Point(200, 200), new Point(100, 500))));
+        assertNull(mMeasurer.measure(gray, Arrays.asList(CORNERS[0], CORNERS[1], CORNERS[2])));
+        assertNull(mMeasurer.measure(gray, null));
+        gray.release();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void landscapeSheetSizeIsRejected() {
+        new SheetMeasurer(297, 210);
+    }
+
+    private static void assertFoot(double[] expected, SheetMeasurer.Result result) {
+        assertNotNull(result);
+        assertEquals(expected[0], result.lengthMm, TOLERANCE_MM);
+        assertEquals(expected[1], result.widthMm, TOLERANCE_MM);
+    }
+}
@@ -0,0 +1,216 @@
+package com.google.ar.sceneform.samples.hellosceneform;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Every YUV_420_888 layout must give the same RGBA as a plain BT.601 conversion of the
+// planes, whichever path toRgba() takes for it.
+public class YuvConverterTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    // Even, but the chroma planes are not a whole number of I420 rows
+    private static final int HEIGHT_2_MOD_4 = 46;
+    // OpenCV rounds in fixed point
+    private static final int TOLERANCE = 2;
+
+    private int mHeight;
+    private byte[] mY;
+    private byte[] mU;
+    private byte[] mV;
+    private YuvConverter mConverter;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Before
+    public void setUp() {
+        planes(HEIGHT);
+        mConverter = new YuvConverter();
+    }
+
+    @After
+    public void tearDown() {
+        mConverter.release();
+    }
+
+    @Test
+    public void nv12MatchesReference() {
+        int stride = WIDTH + 16;
+        ByteBuffer y = luma(stride);
+        ByteBuffer uv = interleaved(stride, mU, mV);
+        assertMatchesReference(mConverter.toRgba(y, stride, slice(uv, 0), slice(uv, 1), stride, 2, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void nv21MatchesReference() {
+        int stride = WIDTH + 16;
+        ByteBuffer y = luma(stride);
+        ByteBuffer vu = interleaved(stride, mV, mU);
+        assertMatchesReference(mConverter.toRgba(y, stride, slice(vu, 1), slice(vu, 0), stride, 2, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void paddedI420MatchesReference() {
+        int yStride = WIDTH + 24;
+        int uvStride = WIDTH / 2 + 8;
+        ByteBuffer y = luma(yStride);
+        ByteBuffer u = planar(uvStride, mU);
+        ByteBuffer v = planar(uvStride, mV);
+        assertMatchesReference(mConverter.toRgba(y, yStride, u, v, uvStride, 1, WIDTH, HEIGHT));
+    }
+
+    // Pixel stride 2 but two separate buffers, gathered like I420
+    @Test
+    public void separateInterleavedPlanesMatchReference() {
+        ByteBuffer y = luma(WIDTH);
+        ByteBuffer u = interleaved(WIDTH, mU, mU);
+        ByteBuffer v = interleaved(WIDTH, mV, mV);
+        assertMatchesReference(mConverter.toRgba(y, WIDTH, u, v, WIDTH, 2, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void heightNotMultipleOfFourMatchesReference() {
+        planes(HEIGHT_2_MOD_4);
+        int yStride = WIDTH + 24;
+        int uvStride = WIDTH / 2 + 8;
+        assertMatchesReference(mConverter.toRgba(luma(yStride), yStride, planar(uvStride, mU), planar(uvStride, mV),
+                uvStride, 1, WIDTH, mHeight));
+        assertMatchesReference(mConverter.toRgba(luma(WIDTH), WIDTH, interleaved(WIDTH, mU, mU),
+                interleaved(WIDTH, mV, mV), WIDTH, 2, WIDTH, mHeight));
+    }
+
+    @Test
+    public void chromaOrderOnlyReadsAddresses() {
+        ByteBuffer vu = interleaved(WIDTH, mV, mU);
+        byte[] before = contents(vu);
+        ByteBuffer v = slice(vu, 0).asReadOnlyBuffer();
+        ByteBuffer u = slice(vu, 1).asReadOnlyBuffer();
+
+        assertEquals(-1, YuvConverter.chromaOrder(u, v, WIDTH, WIDTH, HEIGHT));
+        assertEquals(1, YuvConverter.chromaOrder(v, u, WIDTH, WIDTH, HEIGHT));
+        assertTrue(Math.abs(YuvConverter.chromaOrder(u, interleaved(WIDTH, mV, mU), WIDTH, WIDTH, HEIGHT)) > 1);
+
+        mConverter.toRgba(luma(WIDTH), WIDTH, u, v, WIDTH, 2, WIDTH, HEIGHT);
+        assertArrayEquals(before, contents(vu));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void oddSizeIsRejected() {
+        mConverter.toRgba(luma(WIDTH), WIDTH, planar(WIDTH / 2, mU), planar(WIDTH / 2, mV), WIDTH / 2, 1,
+                WIDTH - 1, HEIGHT);
+    }
+
+    // Random planes of the given height
+    private void planes(int height) {
+        Random random = new Random(42);
+        mHeight = height;
+        mY = new byte[WIDTH * height];
+        mU = new byte[WIDTH * height / 4];
+        mV = new byte[WIDTH * height / 4];
+        random.nextBytes(mY);
+        random.nextBytes(mU);
+        random.nextBytes(mV);
+    }
+
+    private void assertMatchesReference(Mat rgba) {
+        assertEquals(mHeight, rgba.rows());
+        assertEquals(WIDTH, rgba.cols());
+        assertEquals(4, rgba.channels());
+        byte[] actual = new byte[WIDTH * mHeight * 4];
+        rgba.get(0, 0, actual);
+        for (int row = 0; row < mHeight; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                int[] expected = reference(row, col);
+                int at = (row * WIDTH + col) * 4;
+                for (int c = 0; c < 3; c++) {
+                    int value = actual[at + c] & 0xff;
+                    if (Math.abs(value - expected[c]) > TOLERANCE) {
+                        throw new AssertionError(String.format("pixel (%d, %d) channel %d: expected %d, got %d",
+                                col, row, c, expected[c], value));
+                    }
+                }
+                assertEquals(255, actual[at + 3] & 0xff);
+            }
+        }
+    }
+
+    // BT.601 video range, chroma shared by each 2x2 block
+    private int[] reference(int row, int col) {
+        int chroma = (row / 2) * (WIDTH / 2) + col / 2;
+        double y = 1.164 * (Math.max(0, (mY[row * WIDTH + col] & 0xff) - 16));
+        double u = (mU[chroma] & 0xff) - 128;
+        double v = (mV[chroma] & 0xff) - 128;
+        return new int[]{
+                clamp(y + 1.596 * v),
+                clamp(y - 0.813 * v - 0.391 * u),
+                clamp(y + 2.018 * u)
+        };
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private ByteBuffer luma(int stride) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(stride * mHeight);
+        for (int row = 0; row < mHeight; row++) {
+            buffer.position(row * stride);
+            buffer.put(mY, row * WIDTH, WIDTH);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    // One chroma plane, pixel stride 1
+    private ByteBuffer planar(int stride, byte[] plane) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(stride * mHeight / 2);
+        for (int row = 0; row < mHeight / 2; row++) {
+            buffer.position(row * stride);
+            buffer.put(plane, row * WIDTH / 2, WIDTH / 2);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    // Two chroma planes interleaved, first one first
+    private ByteBuffer interleaved(int stride, byte[] first, byte[] second) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(stride * mHeight / 2);
+        for (int row = 0; row < mHeight / 2; row++) {
+            for (int col = 0; col < WIDTH / 2; col++) {
+                buffer.put(row * stride + 2 * col, first[row * WIDTH / 2 + col]);
+                buffer.put(row * stride + 2 * col + 1, second[row * WIDTH / 2 + col]);
+            }
+        }
+        return buffer;
+    }
+
+    // A camera plane view starting offset bytes into the interleaved buffer; the last pixel
+    // of the later view ends with the buffer, as in YUV_420_888 images
+    private static ByteBuffer slice(ByteBuffer buffer, int offset) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(buffer.capacity() - 1 + offset);
+        return view.slice();
+    }
+
+    private static byte[] contents(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.capacity()];
+        ByteBuffer copy = buffer.duplicate();
+        copy.clear();
+        copy.get(bytes);
+        return bytes;
+    }
+}